@@ -0,0 +1,86 @@
+package com.lunarlaurus.mcp.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lunarlaurus.mcp.service.inference.EmbeddingResponseDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of Ollama embedding responses with EmbeddingResponseDecoder,
+ * against a Jackson tree-model baseline. Needs no application context.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmbeddingDecodeBenchmark {
+
+    @Param({"384", "768", "1024"})
+    public int dimensions;
+
+    /** Vectors in one /api/embed batch response. */
+    @Param({"32"})
+    public int batchSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EmbeddingResponseDecoder decoder;
+    private byte[] single;
+    private byte[] batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        decoder = new EmbeddingResponseDecoder(objectMapper.getFactory());
+        Random random = new Random(42);
+        List<float[]> vectors = new ArrayList<>();
+        for (int v = 0; v < batchSize; v++) {
+            float[] vector = new float[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        single = objectMapper.writeValueAsBytes(Map.of("embedding", vectors.get(0)));
+        batch = objectMapper.writeValueAsBytes(Map.of("embeddings", vectors));
+    }
+
+    @Benchmark
+    public float[] decodeSingle() throws IOException {
+        return decoder.decodeSingle(new ByteArrayInputStream(single));
+    }
+
+    @Benchmark
+    public List<float[]> decodeBatch() throws IOException {
+        return decoder.decodeBatch(new ByteArrayInputStream(batch), batchSize);
+    }
+
+    @Benchmark
+    public float[] treeModelSingle() throws IOException {
+        JsonNode values = objectMapper.readTree(single).get("embedding");
+        float[] embedding = new float[values.size()];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = (float) values.get(i).asDouble();
+        }
+        return embedding;
+    }
+}
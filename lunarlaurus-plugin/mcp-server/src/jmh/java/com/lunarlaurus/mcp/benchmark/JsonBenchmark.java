@@ -0,0 +1,71 @@
+package com.lunarlaurus.mcp.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lunarlaurus.mcp.model.CallToolRequest;
+import com.lunarlaurus.mcp.model.CallToolResponse;
+import com.lunarlaurus.mcp.model.ListToolsResponse;
+import com.lunarlaurus.mcp.service.MCPService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of the REST protocol models with the application's
+ * own ObjectMapper, as the controller sees them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    /** Characters of prompt in the request and of text in the response. */
+    @Param({"256", "16384"})
+    public int textChars;
+
+    private ObjectMapper objectMapper;
+    private byte[] requestJson;
+    private CallToolResponse response;
+    private ListToolsResponse tools;
+
+    @Setup(Level.Trial)
+    public void setUp(ServerState server) throws IOException {
+        objectMapper = server.bean(ObjectMapper.class);
+        String text = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. ".repeat(textChars / 57 + 1)
+            .substring(0, textChars);
+        requestJson = objectMapper.writeValueAsBytes(new CallToolRequest("local_llm",
+            Map.of("prompt", text, "max_tokens", 512, "temperature", 0.2, "model", "auto")));
+        response = CallToolResponse.success(text);
+        tools = server.bean(MCPService.class).listTools();
+    }
+
+    @Benchmark
+    public CallToolRequest readCallToolRequest() throws IOException {
+        return objectMapper.readValue(requestJson, CallToolRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeCallToolResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] writeListToolsResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(tools);
+    }
+}
@@ -0,0 +1,64 @@
+package com.lunarlaurus.mcp.benchmark;
+
+import com.lunarlaurus.mcp.MCPServerApplication;
+import com.lunarlaurus.mcp.loadtest.StubBackends;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The full server application context, without its web server or MCP
+ * transport, wired to instant StubBackends. One per benchmark fork.
+ *
+ * Response, embedding, analysis and translation caches are off so every
+ * call reaches the (stub) backend; embedding micro-batching is off because
+ * a single benchmark thread would otherwise measure its max-wait timer.
+ * Application logging is off: it measures the appender, not the gateway,
+ * and the error-path benchmarks would flood the console with stack traces.
+ */
+@State(Scope.Benchmark)
+public class ServerState {
+
+    private StubBackends backends;
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        backends = new StubBackends();
+        Path data = Files.createTempDirectory("mcp-benchmark");
+
+        Map<String, Object> properties = new LinkedHashMap<>(backends.serverProperties(data));
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.ai.mcp.server.enabled", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.lunarlaurus.mcp", "OFF");
+        properties.put("backend.pool.health.enabled", "false");
+        properties.put("embedding.micro-batch.enabled", "false");
+
+        context = new SpringApplicationBuilder(MCPServerApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(properties)
+            .run();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+        backends.close();
+    }
+}
@@ -0,0 +1,90 @@
+package com.lunarlaurus.mcp.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import com.lunarlaurus.mcp.service.routing.BackendRouter;
+import com.lunarlaurus.mcp.service.tokenizer.HeuristicTokenizer;
+import com.lunarlaurus.mcp.service.tokenizer.TokenCounter;
+import com.lunarlaurus.mcp.service.tokenizer.Tokenizer;
+import com.lunarlaurus.mcp.service.tokenizer.TokenizerLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token counting and backend routing on prompts of mixed prose and code.
+ *
+ * tokenize runs the tokenizer itself: the heuristic estimate by default, or
+ * the model vocabulary given with -p vocab=/path/to/model.gguf (or a
+ * tokenizer.json). count goes through TokenCounter and its hash-keyed cache;
+ * route is BackendRouter.resolve for a backend "auto" request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+
+    private static final String SAMPLE = "The router estimates completion time from queue depth and throughput. "
+        + "public int count(String text) { return text == null ? 0 : tokenizer.countTokens(text); }\n"
+        + "Données, 数据 and データ tokenize less densely than English prose. ";
+
+    @Param({"200", "4000", "32000"})
+    public int textChars;
+
+    @Param({""})
+    public String vocab;
+
+    private Tokenizer tokenizer;
+    private TokenCounter tokenCounter;
+    private BackendRouter router;
+    private String text;
+    private GenerationRequest autoRequest;
+
+    @Setup(Level.Trial)
+    public void setUp(ServerState server) throws IOException {
+        tokenizer = vocab.isEmpty()
+            ? new HeuristicTokenizer()
+            : TokenizerLoader.load(Path.of(vocab), server.bean(ObjectMapper.class));
+        tokenCounter = server.bean(TokenCounter.class);
+        router = server.bean(BackendRouter.class);
+        text = SAMPLE.repeat(textChars / SAMPLE.length() + 1).substring(0, textChars);
+        autoRequest = GenerationRequest.builder()
+            .prompt(text)
+            .maxTokens(256)
+            .temperature(0.2)
+            .backend(BackendRouter.AUTO)
+            .tool("local_llm")
+            .build();
+    }
+
+    @Benchmark
+    public int tokenize() {
+        return tokenizer.countTokens(text);
+    }
+
+    @Benchmark
+    public int count() {
+        return tokenCounter.count(text);
+    }
+
+    @Benchmark
+    public GenerationRequest route() {
+        return router.resolve(autoRequest);
+    }
+}
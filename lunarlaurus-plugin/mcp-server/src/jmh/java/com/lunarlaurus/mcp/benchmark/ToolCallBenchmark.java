@@ -0,0 +1,79 @@
+package com.lunarlaurus.mcp.benchmark;
+
+import com.lunarlaurus.mcp.model.CallToolRequest;
+import com.lunarlaurus.mcp.model.CallToolResponse;
+import com.lunarlaurus.mcp.model.ListToolsResponse;
+import com.lunarlaurus.mcp.service.MCPService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCPService.callTool end to end against StubBackends: argument coercion,
+ * coalescing, routing, admission, the pooled HTTP client and response
+ * parsing. unknownTool isolates dispatch and error handling with no
+ * backend call; listTools measures schema construction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToolCallBenchmark {
+
+    private MCPService mcpService;
+    private CallToolRequest localLlmGpu;
+    private CallToolRequest localLlmAuto;
+    private CallToolRequest embedding;
+    private CallToolRequest unknown;
+
+    @Setup(Level.Trial)
+    public void setUp(ServerState server) {
+        mcpService = server.bean(MCPService.class);
+        String prompt = "Explain what a write-ahead log is and why databases use one. ".repeat(4);
+        // JSON-decoded arguments arrive as Integer/Double/Boolean; coercion is part of what is measured
+        localLlmGpu = new CallToolRequest("local_llm",
+            Map.of("prompt", prompt, "max_tokens", 64, "temperature", 0.2, "model", "gpu"));
+        localLlmAuto = new CallToolRequest("local_llm",
+            Map.of("prompt", prompt, "max_tokens", 64, "temperature", 0.7));
+        embedding = new CallToolRequest("embedding", Map.of("text", prompt));
+        unknown = new CallToolRequest("no_such_tool", Map.of("text", prompt));
+    }
+
+    @Benchmark
+    public CallToolResponse localLlmGpu() {
+        return mcpService.callTool(localLlmGpu);
+    }
+
+    @Benchmark
+    public CallToolResponse localLlmAutoRouted() {
+        return mcpService.callTool(localLlmAuto);
+    }
+
+    @Benchmark
+    public CallToolResponse embedding() {
+        return mcpService.callTool(embedding);
+    }
+
+    @Benchmark
+    public CallToolResponse unknownTool() {
+        return mcpService.callTool(unknown);
+    }
+
+    @Benchmark
+    public ListToolsResponse listTools() {
+        return mcpService.listTools();
+    }
+}
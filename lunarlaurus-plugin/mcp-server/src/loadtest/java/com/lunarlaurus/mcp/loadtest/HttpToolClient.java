@@ -0,0 +1,76 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Calls tools through POST /mcp/call-tool on a running server.
+ */
+public final class HttpToolClient implements ToolClient {
+
+    private final ObjectMapper objectMapper;
+    private final URI callTool;
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    public HttpToolClient(String baseUrl, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.callTool = URI.create(baseUrl.replaceAll("/+$", "") + "/mcp/call-tool");
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(executor)
+            .build();
+    }
+
+    @Override
+    public String transport() {
+        return "http";
+    }
+
+    @Override
+    public CompletableFuture<Boolean> call(Workload.Call call) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Map.of("name", call.httpName(), "arguments", call.httpArguments()));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(callTool)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                return false;
+            }
+            try {
+                return !objectMapper.readTree(response.body()).path("isError").asBoolean(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,93 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A latency distribution in milliseconds, parsed from a short spec:
+ * - fixed:50 (or just 50)
+ * - uniform:20-80
+ * - exponential:50          (mean)
+ * - lognormal:50,400        (median, p99): the long-tailed shape of real backends
+ */
+public final class LatencyDistribution {
+
+    public static final LatencyDistribution ZERO = new LatencyDistribution("fixed:0", 0, 0, 0);
+
+    // Standard normal quantile at 0.99
+    private static final double Z_99 = 2.3263;
+
+    private final String spec;
+    private final int kind;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(String spec, int kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String s = spec.trim();
+        int colon = s.indexOf(':');
+        String type = colon >= 0 ? s.substring(0, colon) : "fixed";
+        String args = colon >= 0 ? s.substring(colon + 1) : s;
+        try {
+            switch (type) {
+                case "fixed":
+                    return new LatencyDistribution(s, 0, Double.parseDouble(args), 0);
+                case "uniform": {
+                    String[] range = args.split("-");
+                    double low = Double.parseDouble(range[0]);
+                    double high = Double.parseDouble(range[1]);
+                    if (high < low) {
+                        throw new IllegalArgumentException("uniform range is reversed");
+                    }
+                    return new LatencyDistribution(s, 1, low, high);
+                }
+                case "exponential":
+                    return new LatencyDistribution(s, 2, Double.parseDouble(args), 0);
+                case "lognormal": {
+                    String[] params = args.split(",");
+                    double median = Double.parseDouble(params[0]);
+                    double p99 = Double.parseDouble(params[1]);
+                    if (median <= 0 || p99 < median) {
+                        throw new IllegalArgumentException("lognormal needs 0 < median <= p99");
+                    }
+                    double mu = Math.log(median);
+                    return new LatencyDistribution(s, 3, mu, (Math.log(p99) - mu) / Z_99);
+                }
+                default:
+                    throw new IllegalArgumentException("unknown distribution " + type);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Bad latency spec '" + spec + "' (fixed:MS, uniform:MIN-MAX, "
+                + "exponential:MEAN, lognormal:MEDIAN,P99): " + e.getMessage(), e);
+        }
+    }
+
+    public double sampleMs() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double ms;
+        switch (kind) {
+            case 1:
+                ms = a + random.nextDouble() * (b - a);
+                break;
+            case 2:
+                ms = -a * Math.log(1 - random.nextDouble());
+                break;
+            case 3:
+                ms = Math.exp(a + b * random.nextGaussian());
+                break;
+            default:
+                ms = a;
+        }
+        return Math.max(0, ms);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
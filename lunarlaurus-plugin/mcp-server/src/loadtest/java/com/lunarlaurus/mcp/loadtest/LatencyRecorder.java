@@ -0,0 +1,81 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-tool latencies and error counts for one load test run. Percentiles and
+ * throughput are over successful calls; every latency is kept (a few million
+ * longs at most), so percentiles are exact.
+ */
+public final class LatencyRecorder {
+
+    /**
+     * Results for one tool, or for all tools together.
+     */
+    public record Summary(String tool, long requests, long errors, double errorPercent, double throughput,
+                          double p50Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+
+    private static final String ALL = "ALL";
+
+    private final Map<String, Series> series = new LinkedHashMap<>();
+
+    public LatencyRecorder(List<String> tools) {
+        for (String tool : tools) {
+            series.put(tool, new Series());
+        }
+        series.put(ALL, new Series());
+    }
+
+    /**
+     * Record one call, timed from when it was scheduled to be sent, so a
+     * backed-up client doesn't hide queueing delay (coordinated omission).
+     */
+    public void record(String tool, long latencyNanos, boolean success) {
+        series.get(tool).add(latencyNanos, success);
+        series.get(ALL).add(latencyNanos, success);
+    }
+
+    public List<Summary> summarize(double seconds) {
+        return series.entrySet().stream().map(e -> e.getValue().summarize(e.getKey(), seconds)).toList();
+    }
+
+    private static final class Series {
+
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void add(long latencyNanos, boolean success) {
+            if (!success) {
+                errors++;
+                return;
+            }
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+        }
+
+        synchronized Summary summarize(String tool, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            long requests = size + errors;
+            return new Summary(tool, requests, errors, requests > 0 ? 100.0 * errors / requests : 0,
+                seconds > 0 ? size / seconds : 0,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0);
+        }
+
+        private static double percentile(long[] sorted, double q) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(q * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
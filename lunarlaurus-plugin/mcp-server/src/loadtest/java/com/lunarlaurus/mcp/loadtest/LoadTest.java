@@ -0,0 +1,471 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.lunarlaurus.mcp.MCPServerApplication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load Test
+ *
+ * Open-loop load generator for the MCP server: starts StubBackends with the
+ * configured latency, decode rate and failure rate per protocol, sends a tool
+ * mix at a fixed target rate over each requested transport, and reports
+ * p50/p99/p999 latency, error rate and throughput per tool. Latency is
+ * measured from each call's scheduled send time, so a saturated server shows
+ * up as growing latency rather than a silently lower request rate.
+ *
+ * Transports:
+ * - http:  POST /mcp/call-tool on an in-process server, or on --url
+ * - stdio: MCP JSON-RPC over stdin/stdout of a server child process
+ *   (profile "stdio"), started from this classpath
+ *
+ * Each transport runs once per thread mode: platform (the server's thread
+ * pools) or virtual (spring.threads.virtual.enabled). To see where the
+ * threads rather than the backends limit concurrency, raise the backend
+ * limits with backend-capacity and use slow stubs at a high rate.
+ *
+ * With endpoints-per-backend above 1, each backend pool of the server gets
+ * that many stub endpoints, and faults can be set per endpoint: a failure
+ * rate, which opens the endpoint's circuit, or an outage window, during which
+ * it refuses connections and is ejected by health probes. Each run then also
+ * reports, per endpoint, the calls the stub answered and failed on purpose
+ * and, for the in-process http server, the pool's outcomes, circuit openings
+ * and ejections (backend.requests, backend.endpoint.*), warm-up included.
+ *
+ * Options (--name=value):
+ *   transports=http[,stdio]   rps=20   duration-s=30   warmup-s=5   timeout-ms=120000
+ *   threads=platform[,virtual]
+ *   backend-capacity=0        if set, slots, admission queue and connection pools
+ *                             per backend on the server (0 keeps its configuration)
+ *   mix=local_llm=6,embedding=3,summarizer=1   (also code_analysis, translation)
+ *   max-tokens=128            tokens requested per generation
+ *   gpu-latency=lognormal:80,600   gpu-tps=40   gpu-failure-rate=0      (Ollama /api/generate)
+ *   cpu-latency=lognormal:300,2000 cpu-tps=8    cpu-failure-rate=0      (llama.cpp /completion)
+ *   embedding-latency=lognormal:8,60           embedding-failure-rate=0 (Ollama /api/embed[dings])
+ *   max-output-tokens=256     cap on tokens any stub generates
+ *   endpoints-per-backend=1   stub endpoints in every backend pool
+ *   endpoint-failure-rates=   per endpoint, in order, e.g. 0.5,0 (on top of the per-protocol rates)
+ *   endpoint-outages=         INDEX@FROM-TO, seconds after each run starts, e.g. 1@10-25
+ *   health-interval-ms=1000   circuit-open-ms=5000   server pool settings, short enough
+ *                             for ejection and recovery to show within a run
+ *   url=http://host:8000      drive an already running server over http instead
+ *   stubs-only=true           just run the stubs (on stub-port) for an external server
+ *   stub-port=0 (then one port per endpoint from there)   result=target/loadtest-result.json   startup-timeout-ms=120000
+ *
+ * Latencies are fixed:MS, uniform:MIN-MAX, exponential:MEAN or
+ * lognormal:MEDIAN,P99 (see LatencyDistribution).
+ */
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    private static final Pattern OUTAGE = Pattern.compile("(\\d+)@([\\d.]+)-([\\d.]+)");
+
+    static {
+        DEFAULTS.put("transports", "http");
+        DEFAULTS.put("threads", "platform");
+        DEFAULTS.put("backend-capacity", "0");
+        DEFAULTS.put("rps", "20");
+        DEFAULTS.put("duration-s", "30");
+        DEFAULTS.put("warmup-s", "5");
+        DEFAULTS.put("timeout-ms", "120000");
+        DEFAULTS.put("mix", "local_llm=6,embedding=3,summarizer=1");
+        DEFAULTS.put("max-tokens", "128");
+        DEFAULTS.put("gpu-latency", "lognormal:80,600");
+        DEFAULTS.put("gpu-tps", "40");
+        DEFAULTS.put("gpu-failure-rate", "0");
+        DEFAULTS.put("cpu-latency", "lognormal:300,2000");
+        DEFAULTS.put("cpu-tps", "8");
+        DEFAULTS.put("cpu-failure-rate", "0");
+        DEFAULTS.put("embedding-latency", "lognormal:8,60");
+        DEFAULTS.put("embedding-failure-rate", "0");
+        DEFAULTS.put("max-output-tokens", "256");
+        DEFAULTS.put("endpoints-per-backend", "1");
+        DEFAULTS.put("endpoint-failure-rates", "");
+        DEFAULTS.put("endpoint-outages", "");
+        DEFAULTS.put("health-interval-ms", "1000");
+        DEFAULTS.put("circuit-open-ms", "5000");
+        DEFAULTS.put("url", "");
+        DEFAULTS.put("stubs-only", "false");
+        DEFAULTS.put("stub-port", "0");
+        DEFAULTS.put("result", "target/loadtest-result.json");
+        DEFAULTS.put("startup-timeout-ms", "120000");
+    }
+
+    private final Map<String, String> options;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = (eq >= 0 ? arg.substring(0, eq) : arg).replaceFirst("^--", "");
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + "; options are " + DEFAULTS.keySet());
+            }
+            options.put(name, eq >= 0 ? arg.substring(eq + 1) : "true");
+        }
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        int maxOutput = integer("max-output-tokens");
+        StubBackends.Behaviour gpu = new StubBackends.Behaviour(LatencyDistribution.parse(option("gpu-latency")),
+            number("gpu-tps"), maxOutput, number("gpu-failure-rate"));
+        StubBackends.Behaviour cpu = new StubBackends.Behaviour(LatencyDistribution.parse(option("cpu-latency")),
+            number("cpu-tps"), maxOutput, number("cpu-failure-rate"));
+        StubBackends.Behaviour embeddings = new StubBackends.Behaviour(LatencyDistribution.parse(option("embedding-latency")),
+            0, maxOutput, number("embedding-failure-rate"));
+        Workload workload = Workload.parse(option("mix"), integer("max-tokens"));
+        Path data = Files.createTempDirectory("mcp-loadtest");
+
+        List<StubBackends> stubs = new ArrayList<>();
+        try {
+            startStubs(stubs, gpu, cpu, embeddings);
+            System.out.printf("Stub backends at %s (gpu %s @ %s tok/s, cpu %s @ %s tok/s, embeddings %s)%n",
+                String.join(", ", stubs.stream().map(StubBackends::baseUrl).toList()), gpu.latency(),
+                gpu.tokensPerSecond(), cpu.latency(), cpu.tokensPerSecond(), embeddings.latency());
+            if (Boolean.parseBoolean(option("stubs-only"))) {
+                StubBackends.serverProperties(stubs, data).forEach((k, v) -> System.out.printf("  --%s=%s%n", k, v));
+                System.out.println("Serving stubs until interrupted");
+                scheduleOutages(stubs);
+                Thread.currentThread().join();
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("options", options);
+            for (String transport : option("transports").split(",")) {
+                for (String threads : option("threads").split(",")) {
+                    report.put(transport.trim() + "/" + threads.trim(),
+                        runTransport(transport.trim(), threads.trim(), stubs, data, workload));
+                }
+            }
+            Path result = Path.of(option("result"));
+            if (result.getParent() != null) {
+                Files.createDirectories(result.getParent());
+            }
+            objectMapper.writeValue(result.toFile(), report);
+            System.out.println("Results written to " + result.toAbsolutePath());
+        } finally {
+            stubs.forEach(StubBackends::close);
+        }
+    }
+
+    /**
+     * One stub per endpoint, on consecutive ports from stub-port if it is set,
+     * with its share of endpoint-failure-rates.
+     */
+    private void startStubs(List<StubBackends> stubs, StubBackends.Behaviour gpu, StubBackends.Behaviour cpu,
+                            StubBackends.Behaviour embeddings) throws IOException {
+        int count = integer("endpoints-per-backend");
+        if (count < 1) {
+            throw new IllegalArgumentException("endpoints-per-backend must be at least 1");
+        }
+        int port = integer("stub-port");
+        String[] failureRates = option("endpoint-failure-rates").split(",");
+        if (failureRates.length > count) {
+            throw new IllegalArgumentException("endpoint-failure-rates has " + failureRates.length
+                + " entries for " + count + " endpoints");
+        }
+        for (int i = 0; i < count; i++) {
+            StubBackends stub = new StubBackends(port > 0 ? port + i : 0, gpu, cpu, embeddings);
+            stubs.add(stub);
+            if (i < failureRates.length && !failureRates[i].isBlank()) {
+                stub.setEndpointFailureRate(Double.parseDouble(failureRates[i].trim()));
+            }
+        }
+    }
+
+    /**
+     * Take endpoints down and bring them back up as endpoint-outages says,
+     * counting from now. Shutting the returned scheduler down ends the
+     * outages early.
+     */
+    private ScheduledExecutorService scheduleOutages(List<StubBackends> stubs) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stub-outages");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (String outage : option("endpoint-outages").split(",")) {
+            if (outage.isBlank()) {
+                continue;
+            }
+            Matcher m = OUTAGE.matcher(outage.trim());
+            if (!m.matches() || Integer.parseInt(m.group(1)) >= stubs.size()) {
+                throw new IllegalArgumentException("Bad endpoint outage " + outage
+                    + " (INDEX@FROM-TO in seconds, INDEX below endpoints-per-backend)");
+            }
+            StubBackends stub = stubs.get(Integer.parseInt(m.group(1)));
+            long from = (long) (Double.parseDouble(m.group(2)) * 1000);
+            long to = (long) (Double.parseDouble(m.group(3)) * 1000);
+            scheduler.schedule(() -> {
+                System.out.printf("Endpoint %s down%n", stub.baseUrl());
+                stub.takeDown();
+            }, from, TimeUnit.MILLISECONDS);
+            scheduler.schedule(() -> {
+                System.out.printf("Endpoint %s up%n", stub.baseUrl());
+                stub.bringUp();
+                return null;
+            }, to, TimeUnit.MILLISECONDS);
+        }
+        return scheduler;
+    }
+
+    private Map<String, Object> runTransport(String transport, String threads, List<StubBackends> stubs,
+                                             Path data, Workload workload) throws IOException {
+        Map<String, Object> properties = serverProperties(threads, stubs, data);
+        ConfigurableApplicationContext server = null;
+        ToolClient client;
+        switch (transport) {
+            case "http": {
+                String url = option("url");
+                if (url.isEmpty()) {
+                    server = startHttpServer(properties);
+                    url = "http://localhost:" + server.getEnvironment().getProperty("local.server.port");
+                }
+                client = new HttpToolClient(url, objectMapper);
+                break;
+            }
+            case "stdio":
+                client = new StdioToolClient(stdioCommand(properties, data), data.resolve("stdio-stderr.log"),
+                    objectMapper, integer("startup-timeout-ms"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown transport " + transport + " (http, stdio)");
+        }
+
+        List<StubBackends.Stats> before = stubs.stream().map(StubBackends::stats).toList();
+        ScheduledExecutorService outages = scheduleOutages(stubs);
+        try (client) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("tools", drive(client, threads, workload));
+            result.put("endpoints", endpointReports(stubs, before, server));
+            return result;
+        } finally {
+            outages.shutdownNow();
+            for (StubBackends stub : stubs) {
+                stub.bringUp();
+            }
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Per endpoint: what its stub saw during the run and, when the server runs
+     * in this JVM, what each backend pool recorded for it.
+     */
+    private List<EndpointReport> endpointReports(List<StubBackends> stubs, List<StubBackends.Stats> before,
+                                                 ConfigurableApplicationContext server) {
+        MeterRegistry meters = server != null ? server.getBean(MeterRegistry.class) : null;
+        List<EndpointReport> reports = new ArrayList<>();
+        for (int i = 0; i < stubs.size(); i++) {
+            StubBackends.Stats stats = stubs.get(i).stats();
+            String prefix = stats.url() + "/";
+            Map<String, PoolStats> pools = new TreeMap<>();
+            if (meters != null) {
+                for (Timer timer : meters.find("backend.requests").timers()) {
+                    if (timer.getId().getTag("endpoint").startsWith(prefix)) {
+                        pools.computeIfAbsent(timer.getId().getTag("pool"), pool -> new PoolStats())
+                            .outcomes.merge(timer.getId().getTag("outcome"), timer.count(), Long::sum);
+                    }
+                }
+                for (Counter counter : meters.find("backend.endpoint.circuit_opened").counters()) {
+                    if (counter.getId().getTag("endpoint").startsWith(prefix)) {
+                        pools.computeIfAbsent(counter.getId().getTag("pool"), pool -> new PoolStats())
+                            .circuitOpened += (long) counter.count();
+                    }
+                }
+                for (Counter counter : meters.find("backend.endpoint.ejections").counters()) {
+                    if (counter.getId().getTag("endpoint").startsWith(prefix)) {
+                        pools.computeIfAbsent(counter.getId().getTag("pool"), pool -> new PoolStats())
+                            .ejections += (long) counter.count();
+                    }
+                }
+            }
+            reports.add(new EndpointReport(i, stats.url(), stats.requests() - before.get(i).requests(),
+                stats.injectedFailures() - before.get(i).injectedFailures(), pools));
+        }
+
+        if (reports.size() > 1 || !option("endpoint-failure-rates").isBlank()) {
+            System.out.printf("%-24s %9s %9s  %s%n", "endpoint", "requests", "injected", "pool outcomes");
+            for (EndpointReport r : reports) {
+                System.out.printf("%-24s %9d %9d  %s%n", r.url().replaceFirst("^http://", ""), r.requests(),
+                    r.injectedFailures(), r.pools().isEmpty() ? "(server not in process)" : "");
+                r.pools().forEach((pool, p) -> System.out.printf("  %-16s %s, circuit opened %d, ejected %d%n",
+                    pool, p.outcomes, p.circuitOpened, p.ejections));
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * One stub endpoint over a run: calls it answered, those it failed on
+     * purpose, and the server's view per pool (empty unless in process).
+     */
+    public record EndpointReport(int index, String url, long requests, long injectedFailures,
+                                 Map<String, PoolStats> pools) {
+    }
+
+    /**
+     * backend.requests by outcome, and backend.endpoint.circuit_opened and
+     * ejections, for one endpoint of one pool.
+     */
+    public static final class PoolStats {
+        public final Map<String, Long> outcomes = new TreeMap<>();
+        public long circuitOpened;
+        public long ejections;
+    }
+
+    /**
+     * The stub backend properties plus the thread mode, the pool health and
+     * circuit timings and, if set, the backend capacity. The gpu and cpu stubs
+     * of an endpoint share one host, hence one connection route.
+     */
+    private Map<String, Object> serverProperties(String threads, List<StubBackends> stubs, Path data) {
+        if (!threads.equals("platform") && !threads.equals("virtual")) {
+            throw new IllegalArgumentException("Unknown thread mode " + threads + " (platform, virtual)");
+        }
+        Map<String, Object> properties = new LinkedHashMap<>(StubBackends.serverProperties(stubs, data));
+        properties.put("spring.threads.virtual.enabled", String.valueOf(threads.equals("virtual")));
+        properties.put("backend.pool.health.interval-ms", option("health-interval-ms"));
+        properties.put("backend.pool.open-ms", option("circuit-open-ms"));
+        int capacity = integer("backend-capacity");
+        if (capacity > 0) {
+            properties.put("llm.gpu.slots", capacity);
+            properties.put("llm.cpu.slots", capacity);
+            properties.put("admission.queue-capacity", capacity);
+            properties.put("llm.http.max-connections", 2 * capacity);
+            properties.put("llm.http.max-per-endpoint", 2 * capacity);
+            properties.put("embedding.http.max-connections", capacity);
+            properties.put("embedding.http.max-per-endpoint", capacity);
+        }
+        return properties;
+    }
+
+    private ConfigurableApplicationContext startHttpServer(Map<String, Object> serverProperties) {
+        Map<String, Object> properties = new LinkedHashMap<>(serverProperties);
+        properties.put("server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.ai.mcp.server.enabled", "false");
+        properties.put("logging.level.com.lunarlaurus.mcp", "WARN");
+        // Arguments rather than default properties, so they override application.yml as for the stdio child
+        String[] args = properties.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue())
+            .toArray(String[]::new);
+        return new SpringApplicationBuilder(MCPServerApplication.class).run(args);
+    }
+
+    private List<String> stdioCommand(Map<String, Object> serverProperties, Path data) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MCPServerApplication.class.getName());
+        command.add("--spring.profiles.active=stdio");
+        command.add("--logging.file.name=" + data.resolve("stdio-server.log"));
+        command.add("--logging.level.com.lunarlaurus.mcp=WARN");
+        serverProperties.forEach((k, v) -> command.add("--" + k + "=" + v));
+        return command;
+    }
+
+    /**
+     * Send calls at the target rate for warm-up plus duration, recording only
+     * calls scheduled after the warm-up, then wait for stragglers.
+     */
+    private List<LatencyRecorder.Summary> drive(ToolClient client, String threads, Workload workload) {
+        double rps = number("rps");
+        long interval = (long) (1e9 / rps);
+        long warmup = TimeUnit.SECONDS.toNanos(integer("warmup-s"));
+        long duration = TimeUnit.SECONDS.toNanos(integer("duration-s"));
+        long timeoutMs = integer("timeout-ms");
+        LatencyRecorder recorder = new LatencyRecorder(workload.tools());
+        AtomicInteger inFlight = new AtomicInteger();
+
+        System.out.printf("%n%s, %s threads: %.1f rps for %d s after %d s warm-up, mix %s%n", client.transport(),
+            threads, rps, integer("duration-s"), integer("warmup-s"), option("mix"));
+        long start = System.nanoTime();
+        long measureFrom = start + warmup;
+        long end = measureFrom + duration;
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * interval;
+            if (scheduled >= end) {
+                break;
+            }
+            for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Workload.Call call = workload.next();
+            boolean measured = scheduled >= measureFrom;
+            inFlight.incrementAndGet();
+            CompletableFuture<Boolean> result;
+            try {
+                result = client.call(call);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            result.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((ok, error) -> {
+                if (measured) {
+                    recorder.record(call.tool(), System.nanoTime() - scheduled, error == null && Boolean.TRUE.equals(ok));
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+
+        long drainUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        List<LatencyRecorder.Summary> summaries = recorder.summarize(duration / 1e9);
+        System.out.printf("%-14s %9s %7s %7s %9s %10s %10s %10s %10s%n",
+            "tool", "requests", "errors", "err%", "ok/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (LatencyRecorder.Summary s : summaries) {
+            System.out.printf("%-14s %9d %7d %7.2f %9.2f %10.1f %10.1f %10.1f %10.1f%n", s.tool(), s.requests(),
+                s.errors(), s.errorPercent(), s.throughput(), s.p50Ms(), s.p99Ms(), s.p999Ms(), s.maxMs());
+        }
+        return summaries;
+    }
+
+    private String option(String name) {
+        return options.get(name);
+    }
+
+    private int integer(String name) {
+        return Integer.parseInt(option(name));
+    }
+
+    private double number(String name) {
+        return Double.parseDouble(option(name));
+    }
+}
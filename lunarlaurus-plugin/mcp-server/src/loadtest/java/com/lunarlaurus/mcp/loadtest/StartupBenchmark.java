@@ -0,0 +1,227 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.lunarlaurus.mcp.MCPServerApplication;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup Benchmark
+ *
+ * Measures how long an MCP client waits for a fresh stdio server: each run
+ * starts the server process, completes the initialize handshake and sends
+ * tools/list, timing both from process start. Reports min/median/p90/max
+ * per launch mode over the measured runs.
+ *
+ * Modes (skipped when their build output is missing):
+ * - classpath: MCPServerApplication from this classpath, as LoadTest starts it
+ * - jar:       target/mcp-server-1.0.0.jar
+ * - aot-cds:   the stdio-fast build (target/stdio) with its AOT context and
+ *              AppCDS archive, as scripts/mcp-stdio.sh starts it
+ * - native:    target/mcp-server native image
+ * - custom:    the command given by --command (split on spaces)
+ *
+ * Options (--name=value):
+ *   modes=classpath,jar,aot-cds,native   runs=10   warmup-runs=1
+ *   target=target   command=   timeout-ms=60000   result=target/startup-result.json
+ *
+ * Backends need not be running; calls that reach them aren't part of startup.
+ */
+public final class StartupBenchmark {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    private static final String JAR_NAME = "mcp-server-1.0.0.jar";
+    private static final List<String> JVM_LOGGING = List.of("-Xlog:disable", "-Xlog:all=warning:stderr");
+
+    static {
+        DEFAULTS.put("modes", "classpath,jar,aot-cds,native");
+        DEFAULTS.put("runs", "10");
+        DEFAULTS.put("warmup-runs", "1");
+        DEFAULTS.put("target", "target");
+        DEFAULTS.put("command", "");
+        DEFAULTS.put("timeout-ms", "60000");
+        DEFAULTS.put("result", "target/startup-result.json");
+    }
+
+    /**
+     * Timings of one launch mode, in milliseconds from process start.
+     */
+    public record Summary(String mode, int runs, Stats initialize, Stats toolsList) {
+    }
+
+    public record Stats(double minMs, double medianMs, double p90Ms, double maxMs) {
+
+        static Stats of(double[] ms) {
+            double[] sorted = ms.clone();
+            Arrays.sort(sorted);
+            return new Stats(sorted[0], percentile(sorted, 0.5), percentile(sorted, 0.9), sorted[sorted.length - 1]);
+        }
+
+        private static double percentile(double[] sorted, double p) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+        }
+    }
+
+    private final Map<String, String> options;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private StartupBenchmark(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = (eq >= 0 ? arg.substring(0, eq) : arg).replaceFirst("^--", "");
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name + "; options are " + DEFAULTS.keySet());
+            }
+            options.put(name, eq >= 0 ? arg.substring(eq + 1) : "true");
+        }
+        new StartupBenchmark(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        Path data = Files.createTempDirectory("mcp-startup");
+        List<String> modes = new ArrayList<>(Arrays.asList(options.get("modes").split(",")));
+        if (!options.get("command").isBlank() && !modes.contains("custom")) {
+            modes.add("custom");
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        List<Summary> summaries = new ArrayList<>();
+        for (String mode : modes) {
+            mode = mode.trim();
+            List<String> command = command(mode, data);
+            if (command == null) {
+                System.out.printf("%s: skipped, build output not found under %s%n", mode, options.get("target"));
+                continue;
+            }
+            summaries.add(measure(mode, command, data));
+        }
+
+        System.out.printf("%n%-10s %5s  %-37s  %-37s%n", "mode", "runs",
+            "initialize ms (min/median/p90/max)", "tools/list ms (min/median/p90/max)");
+        for (Summary s : summaries) {
+            System.out.printf("%-10s %5d  %-37s  %-37s%n", s.mode(), s.runs(), format(s.initialize()),
+                format(s.toolsList()));
+        }
+        report.put("modes", summaries);
+        Path result = Path.of(options.get("result"));
+        if (result.getParent() != null) {
+            Files.createDirectories(result.getParent());
+        }
+        objectMapper.writeValue(result.toFile(), report);
+        System.out.println("Results written to " + result.toAbsolutePath());
+    }
+
+    private Summary measure(String mode, List<String> command, Path data) throws IOException {
+        int warmup = Integer.parseInt(options.get("warmup-runs"));
+        int runs = Integer.parseInt(options.get("runs"));
+        long timeoutMs = Long.parseLong(options.get("timeout-ms"));
+        double[] initialize = new double[runs];
+        double[] toolsList = new double[runs];
+        Path stderr = data.resolve("startup-" + mode + "-stderr.log");
+
+        System.out.printf("%s: %s%n", mode, String.join(" ", command));
+        for (int i = -warmup; i < runs; i++) {
+            long start = System.nanoTime();
+            try (StdioToolClient client = new StdioToolClient(command, stderr, objectMapper, timeoutMs)) {
+                long initialized = System.nanoTime();
+                JsonNode response = client.listTools().get(timeoutMs, TimeUnit.MILLISECONDS);
+                long listed = System.nanoTime();
+                if (response.has("error")) {
+                    throw new IOException(mode + ": tools/list failed: " + response.get("error"));
+                }
+                if (i >= 0) {
+                    initialize[i] = (initialized - start) / 1e6;
+                    toolsList[i] = (listed - start) / 1e6;
+                    System.out.printf("  run %2d: initialize %7.1f ms, tools/list %7.1f ms (%d tools)%n", i + 1,
+                        initialize[i], toolsList[i], response.path("result").path("tools").size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            } catch (Exception e) {
+                throw new IOException(mode + ": server did not answer tools/list (see " + stderr + ")", e);
+            }
+        }
+        return new Summary(mode, runs, Stats.of(initialize), Stats.of(toolsList));
+    }
+
+    /**
+     * The command that launches mode, or null when its build output is missing.
+     */
+    private List<String> command(String mode, Path data) {
+        Path target = Path.of(options.get("target"));
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>();
+        switch (mode) {
+            case "classpath":
+                command.add(java);
+                command.addAll(JVM_LOGGING);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(MCPServerApplication.class.getName());
+                break;
+            case "jar":
+                if (!Files.isRegularFile(target.resolve(JAR_NAME))) {
+                    return null;
+                }
+                command.add(java);
+                command.addAll(JVM_LOGGING);
+                command.add("-jar");
+                command.add(target.resolve(JAR_NAME).toString());
+                break;
+            case "aot-cds":
+                Path archive = target.resolve("stdio").resolve("application.jsa");
+                if (!Files.isRegularFile(archive)) {
+                    return null;
+                }
+                command.add(java);
+                command.addAll(JVM_LOGGING);
+                command.add("-XX:SharedArchiveFile=" + archive);
+                command.add("-Dspring.aot.enabled=true");
+                command.add("-jar");
+                command.add(target.resolve("stdio").resolve(JAR_NAME).toString());
+                break;
+            case "native":
+                if (!Files.isExecutable(target.resolve("mcp-server"))) {
+                    return null;
+                }
+                command.add(target.resolve("mcp-server").toString());
+                break;
+            case "custom":
+                if (options.get("command").isBlank()) {
+                    return null;
+                }
+                command.addAll(Arrays.asList(options.get("command").trim().split("\\s+")));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode + " (classpath, jar, aot-cds, native, custom)");
+        }
+        command.add("--spring.profiles.active=stdio");
+        command.add("--logging.file.name=" + data.resolve("startup-" + mode + ".log"));
+        return command;
+    }
+
+    private static String format(Stats stats) {
+        return String.format("%.0f / %.0f / %.0f / %.0f", stats.minMs(), stats.medianMs(), stats.p90Ms(), stats.maxMs());
+    }
+}
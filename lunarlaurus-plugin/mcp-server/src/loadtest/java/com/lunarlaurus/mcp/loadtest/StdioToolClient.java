@@ -0,0 +1,154 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calls tools over the MCP stdio transport of a server child process, the way
+ * an MCP client does: JSON-RPC messages one per line on the child's stdin,
+ * responses matched by id from its stdout. Calls are pipelined, so many can
+ * be outstanding at once; notifications (progress chunks) are ignored.
+ */
+public final class StdioToolClient implements ToolClient {
+
+    private static final String PROTOCOL_VERSION = "2024-11-05";
+
+    private final ObjectMapper objectMapper;
+    private final Process process;
+    private final OutputStream stdin;
+    private final Map<Long, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Start the server with command and complete the MCP initialize handshake.
+     * The child's stderr goes to stderrLog.
+     */
+    public StdioToolClient(List<String> command, Path stderrLog, ObjectMapper objectMapper, long startupTimeoutMs)
+            throws IOException {
+        this.objectMapper = objectMapper;
+        this.process = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.appendTo(stderrLog.toFile()))
+            .start();
+        this.stdin = process.getOutputStream();
+        Thread reader = new Thread(this::readResponses, "loadtest-stdio-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("protocolVersion", PROTOCOL_VERSION);
+        params.put("capabilities", Map.of());
+        params.put("clientInfo", Map.of("name", "mcp-loadtest", "version", "1.0.0"));
+        try {
+            JsonNode response = request("initialize", params).get(startupTimeoutMs, TimeUnit.MILLISECONDS);
+            if (response.has("error")) {
+                throw new IOException("MCP initialize failed: " + response.get("error"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while starting the stdio server", e);
+        } catch (ExecutionException | TimeoutException e) {
+            close();
+            throw new IOException("Stdio server did not initialize within " + startupTimeoutMs + " ms (see "
+                + stderrLog + ")", e);
+        }
+        send(Map.of("jsonrpc", "2.0", "method", "notifications/initialized"));
+    }
+
+    @Override
+    public String transport() {
+        return "stdio";
+    }
+
+    @Override
+    public CompletableFuture<Boolean> call(Workload.Call call) {
+        return request("tools/call", Map.of("name", call.mcpName(), "arguments", call.mcpArguments()))
+            .thenApply(response -> !response.has("error") && !response.path("result").path("isError").asBoolean(false));
+    }
+
+    /**
+     * The tools/list response (result.tools), or the error response.
+     */
+    public CompletableFuture<JsonNode> listTools() {
+        return request("tools/list", Map.of());
+    }
+
+    private CompletableFuture<JsonNode> request(String method, Object params) {
+        long id = ids.incrementAndGet();
+        CompletableFuture<JsonNode> response = new CompletableFuture<>();
+        pending.put(id, response);
+        response.whenComplete((r, e) -> pending.remove(id));
+        try {
+            send(Map.of("jsonrpc", "2.0", "id", id, "method", method, "params", params));
+        } catch (IOException e) {
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    private void send(Object message) throws IOException {
+        byte[] line = objectMapper.writeValueAsBytes(message);
+        synchronized (stdin) {
+            stdin.write(line);
+            stdin.write('\n');
+            stdin.flush();
+        }
+    }
+
+    private void readResponses() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode message;
+                try {
+                    message = objectMapper.readTree(line);
+                } catch (IOException e) {
+                    continue; // Not JSON-RPC: something wrote to stdout
+                }
+                JsonNode id = message.get("id");
+                if (id != null && (message.has("result") || message.has("error"))) {
+                    CompletableFuture<JsonNode> response = pending.get(id.asLong());
+                    if (response != null) {
+                        response.complete(message);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Process ended
+        }
+        IOException closed = new IOException("Stdio server exited");
+        pending.values().forEach(response -> response.completeExceptionally(closed));
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
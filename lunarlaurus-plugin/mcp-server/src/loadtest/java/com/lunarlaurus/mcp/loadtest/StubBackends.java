@@ -0,0 +1,368 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stub Backends
+ *
+ * In-process stand-ins for Ollama and the llama.cpp server, with
+ * realistically shaped responses:
+ * - POST /api/generate   → Ollama generation (JSON, or NDJSON when "stream" is true)
+ * - POST /completion     → llama.cpp completion (JSON, or SSE when "stream" is true)
+ * - POST /api/embeddings → {"embedding": [..]}
+ * - POST /api/embed      → {"embeddings": [[..], ..]}, one vector per input
+ * - GET  / and /health   → 200
+ *
+ * Each protocol has a Behaviour: a latency distribution before the first
+ * token (or before an embedding response), a decode rate, a cap on output
+ * tokens and a failure rate (HTTP 500). Streamed tokens are paced at the
+ * decode rate; non-streamed responses arrive once generation would have
+ * finished. The default is instant, for benchmarks that measure only the
+ * gateway's own overhead.
+ *
+ * Several stubs stand in for a backend pool of several endpoints
+ * (serverProperties(List, Path)). Faults can then be set per endpoint: an
+ * extra failure rate on every protocol, which trips the endpoint's circuit
+ * breaker, or an outage (takeDown/bringUp), during which connections are
+ * refused and health probes fail, so the endpoint is ejected.
+ */
+public final class StubBackends implements AutoCloseable {
+
+    public static final int DIMENSIONS = 768;
+    private static final String[] WORDS = "The quick brown fox jumps over the lazy dog.".split(" ");
+
+    /**
+     * How one backend protocol responds. tokensPerSecond <= 0 generates instantly.
+     */
+    public record Behaviour(LatencyDistribution latency, double tokensPerSecond, int maxOutputTokens,
+                            double failureRate) {
+
+        public static final Behaviour INSTANT = new Behaviour(LatencyDistribution.ZERO, 0, 64, 0);
+
+        long tokenIntervalNanos() {
+            return tokensPerSecond > 0 ? (long) (1e9 / tokensPerSecond) : 0;
+        }
+    }
+
+    /**
+     * Calls answered by one stub, and how many of those it failed on purpose.
+     */
+    public record Stats(String url, long requests, long injectedFailures) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InetSocketAddress address;
+    private final ExecutorService workers;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+    private volatile HttpServer server;
+    private volatile double endpointFailureRate;
+    private final float[] embedding;
+    private final Behaviour ollama;
+    private final Behaviour llamaCpp;
+    private final Behaviour embeddings;
+
+    public StubBackends() throws IOException {
+        this(0, Behaviour.INSTANT, Behaviour.INSTANT, Behaviour.INSTANT);
+    }
+
+    /**
+     * Serve on port (0 = any free port) with the given behaviour per protocol.
+     */
+    public StubBackends(int port, Behaviour ollama, Behaviour llamaCpp, Behaviour embeddings) throws IOException {
+        this.ollama = ollama;
+        this.llamaCpp = llamaCpp;
+        this.embeddings = embeddings;
+        Random random = new Random(42);
+        embedding = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            embedding[i] = (float) random.nextGaussian();
+        }
+
+        workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-backend");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // An explicit port is for servers outside this JVM (possibly in containers), so listen on all interfaces
+        server = listen(port > 0 ? new InetSocketAddress(port)
+            : new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        address = server.getAddress(); // Bound port, to listen on again after an outage
+    }
+
+    private HttpServer listen(InetSocketAddress address) throws IOException {
+        HttpServer listener = HttpServer.create(address, 1024);
+        listener.setExecutor(workers);
+        listener.createContext("/api/generate", this::ollamaGenerate);
+        listener.createContext("/completion", this::llamaCppCompletion);
+        listener.createContext("/api/embeddings", this::ollamaEmbedding);
+        listener.createContext("/api/embed", this::ollamaEmbed);
+        listener.createContext("/", exchange -> respond(exchange, 200, "text/plain", "ok"));
+        listener.start();
+        return listener;
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + address.getPort();
+    }
+
+    /**
+     * Fail this share of calls to any protocol with HTTP 500, on top of each
+     * Behaviour's own failure rate. Health checks are still answered.
+     */
+    public void setEndpointFailureRate(double failureRate) {
+        endpointFailureRate = failureRate;
+    }
+
+    /**
+     * Stop listening, so connections are refused until bringUp. Calls in
+     * progress are cut off.
+     */
+    public synchronized void takeDown() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * Listen again on the same port after takeDown.
+     */
+    public synchronized void bringUp() throws IOException {
+        if (server == null) {
+            server = listen(address);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(baseUrl(), requests.get(), injectedFailures.get());
+    }
+
+    /**
+     * Spring properties pointing every backend of the server at this stub, with
+     * the response, embedding, analysis and translation caches off so that every
+     * call reaches it. data holds the vector index.
+     */
+    public Map<String, Object> serverProperties(Path data) {
+        return serverProperties(List.of(this), data);
+    }
+
+    /**
+     * As serverProperties(Path), with every backend pool made of one endpoint
+     * per stub, in order.
+     */
+    public static Map<String, Object> serverProperties(List<StubBackends> stubs, Path data) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("llm.gpu.endpoints", endpoints(stubs, "/api/generate"));
+        properties.put("llm.cpu.endpoints", endpoints(stubs, "/completion"));
+        properties.put("embedding.endpoints", endpoints(stubs, "/api/embeddings"));
+        properties.put("embedding.batch.endpoints", endpoints(stubs, "/api/embed"));
+        properties.put("llm.cache.enabled", "false");
+        properties.put("llm.cache.disk.enabled", "false");
+        properties.put("embedding.cache.enabled", "false");
+        properties.put("embedding.cache.disk.enabled", "false");
+        properties.put("code-analysis.cache.enabled", "false");
+        properties.put("translation.memory.enabled", "false");
+        properties.put("residency.enabled", "false");
+        properties.put("vector-index.directory", data.resolve("vector-index").toString());
+        return properties;
+    }
+
+    private static String endpoints(List<StubBackends> stubs, String path) {
+        return String.join(",", stubs.stream().map(stub -> stub.baseUrl() + path).toList());
+    }
+
+    private void ollamaGenerate(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        if (delayOrFail(exchange, ollama)) {
+            return;
+        }
+        int promptTokens = approximateTokens(request.path("prompt").asText());
+        int tokens = outputTokens(ollama, request.path("options").path("num_predict").asInt(0));
+        if (request.path("stream").asBoolean(false)) {
+            try (OutputStream out = startStream(exchange, "application/x-ndjson")) {
+                for (int i = 0; i < tokens; i++) {
+                    pace(ollama);
+                    writeLine(out, objectMapper.writeValueAsString(Map.of("response", word(i), "done", false)) + "\n");
+                }
+                writeLine(out, objectMapper.writeValueAsString(ollamaDone(promptTokens, tokens, "")) + "\n");
+            }
+        } else {
+            generate(ollama, tokens);
+            respond(exchange, 200, "application/json",
+                objectMapper.writeValueAsString(ollamaDone(promptTokens, tokens, text(tokens))));
+        }
+    }
+
+    private Map<String, Object> ollamaDone(int promptTokens, int tokens, String response) {
+        Map<String, Object> done = new LinkedHashMap<>();
+        done.put("model", "stub");
+        done.put("response", response);
+        done.put("done", true);
+        done.put("prompt_eval_count", promptTokens);
+        done.put("prompt_eval_duration", promptTokens * 1_000_000L);
+        done.put("eval_count", tokens);
+        done.put("eval_duration", tokens * ollama.tokenIntervalNanos());
+        return done;
+    }
+
+    private void llamaCppCompletion(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        if (delayOrFail(exchange, llamaCpp)) {
+            return;
+        }
+        int promptTokens = approximateTokens(request.path("prompt").asText());
+        int tokens = outputTokens(llamaCpp, request.path("n_predict").asInt(0));
+        if (request.path("stream").asBoolean(false)) {
+            try (OutputStream out = startStream(exchange, "text/event-stream")) {
+                for (int i = 0; i < tokens; i++) {
+                    pace(llamaCpp);
+                    writeLine(out, "data: " + objectMapper.writeValueAsString(Map.of("content", word(i), "stop", false)) + "\n\n");
+                }
+                writeLine(out, "data: " + objectMapper.writeValueAsString(llamaCppDone(promptTokens, tokens, "")) + "\n\n");
+            }
+        } else {
+            generate(llamaCpp, tokens);
+            respond(exchange, 200, "application/json",
+                objectMapper.writeValueAsString(llamaCppDone(promptTokens, tokens, text(tokens))));
+        }
+    }
+
+    private Map<String, Object> llamaCppDone(int promptTokens, int tokens, String content) {
+        Map<String, Object> done = new LinkedHashMap<>();
+        done.put("content", content);
+        done.put("stop", true);
+        done.put("tokens_evaluated", promptTokens);
+        done.put("tokens_predicted", tokens);
+        done.put("timings", Map.of("prompt_ms", promptTokens * 4.0,
+            "predicted_ms", tokens * llamaCpp.tokenIntervalNanos() / 1e6));
+        return done;
+    }
+
+    private void ollamaEmbedding(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        if (delayOrFail(exchange, embeddings)) {
+            return;
+        }
+        respond(exchange, 200, "application/json", objectMapper.writeValueAsString(Map.of("embedding", embedding)));
+    }
+
+    private void ollamaEmbed(HttpExchange exchange) throws IOException {
+        JsonNode input = objectMapper.readTree(exchange.getRequestBody()).path("input");
+        if (delayOrFail(exchange, embeddings)) {
+            return;
+        }
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, input.size()); i++) {
+            vectors.add(embedding);
+        }
+        respond(exchange, 200, "application/json", objectMapper.writeValueAsString(Map.of("embeddings", vectors)));
+    }
+
+    /**
+     * Wait out the sampled latency, then answer 500 instead if this call is
+     * chosen to fail, by the protocol's or this endpoint's failure rate. True
+     * if the exchange has been answered.
+     */
+    private boolean delayOrFail(HttpExchange exchange, Behaviour behaviour) throws IOException {
+        requests.incrementAndGet();
+        sleepNanos((long) (behaviour.latency().sampleMs() * 1_000_000));
+        if (fails(behaviour.failureRate()) || fails(endpointFailureRate)) {
+            injectedFailures.incrementAndGet();
+            respond(exchange, 500, "application/json", "{\"error\":\"injected failure\"}");
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean fails(double failureRate) {
+        return failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+    }
+
+    private static int outputTokens(Behaviour behaviour, int requested) {
+        return requested > 0 ? Math.min(requested, behaviour.maxOutputTokens()) : behaviour.maxOutputTokens();
+    }
+
+    private static void generate(Behaviour behaviour, int tokens) {
+        sleepNanos(tokens * behaviour.tokenIntervalNanos());
+    }
+
+    private static void pace(Behaviour behaviour) {
+        sleepNanos(behaviour.tokenIntervalNanos());
+    }
+
+    private static void sleepNanos(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        for (long left = nanos; left > 0; left = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(left);
+        }
+    }
+
+    private static String word(int i) {
+        return WORDS[i % WORDS.length] + " ";
+    }
+
+    private static String text(int tokens) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            text.append(word(i));
+        }
+        return text.toString().strip();
+    }
+
+    private static int approximateTokens(String prompt) {
+        return Math.max(1, prompt.length() / 4);
+    }
+
+    private static OutputStream startStream(HttpExchange exchange, String contentType) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, 0);
+        return exchange.getResponseBody();
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        takeDown();
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends tool calls over one transport without blocking the caller. The
+ * future completes with true for a successful result, false for a tool
+ * error, or exceptionally if the transport failed.
+ */
+public interface ToolClient extends AutoCloseable {
+
+    String transport();
+
+    CompletableFuture<Boolean> call(Workload.Call call);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,108 @@
+package com.lunarlaurus.mcp.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The tool mix a load test sends, e.g. "local_llm=6,embedding=3,summarizer=1".
+ *
+ * Tools are named as on the REST API; each call is translated to the MCP
+ * tool name and parameter names when sent over stdio. Every call carries a
+ * sequence number in its text so no two calls are coalesced or cached, and
+ * generation calls use a sampling temperature above the caching threshold.
+ */
+public final class Workload {
+
+    /**
+     * One tool call in both transports' vocabularies.
+     */
+    public record Call(String tool, String httpName, Map<String, Object> httpArguments,
+                       String mcpName, Map<String, Object> mcpArguments) {
+    }
+
+    private static final List<String> TOOLS = List.of("local_llm", "summarizer", "embedding", "code_analysis", "translation");
+    private static final String PARAGRAPH = "Local inference keeps source code on the rack and trades peak quality "
+        + "for predictable latency. The gateway routes each request to the backend that should finish first. ";
+    private static final String CODE = "public int sum(int[] values) {\n    int total = 0;\n"
+        + "    for (int i = 0; i <= values.length; i++) {\n        total += values[i];\n    }\n    return total;\n}\n";
+
+    private final List<String> tools = new ArrayList<>();
+    private final int[] cumulativeWeights;
+    private final int maxTokens;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private Workload(Map<String, Integer> weights, int maxTokens) {
+        this.maxTokens = maxTokens;
+        cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            total += entry.getValue();
+            cumulativeWeights[tools.size()] = total;
+            tools.add(entry.getKey());
+        }
+    }
+
+    public static Workload parse(String mix, int maxTokens) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            String tool = kv[0].trim();
+            if (!TOOLS.contains(tool)) {
+                throw new IllegalArgumentException("Unknown tool '" + tool + "' in mix, expected one of " + TOOLS);
+            }
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+            if (weight > 0) {
+                weights.put(tool, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Empty tool mix: " + mix);
+        }
+        return new Workload(weights, maxTokens);
+    }
+
+    public List<String> tools() {
+        return tools;
+    }
+
+    public Call next() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (cumulativeWeights[index] <= pick) {
+            index++;
+        }
+        return call(tools.get(index), sequence.incrementAndGet());
+    }
+
+    private Call call(String tool, long seq) {
+        String text = "Request " + seq + ". " + PARAGRAPH;
+        switch (tool) {
+            case "local_llm":
+                return new Call(tool,
+                    "local_llm", Map.of("prompt", text + "Summarize this in one sentence.", "max_tokens", maxTokens,
+                        "temperature", 0.7, "model", "auto"),
+                    "local_llm", Map.of("prompt", text + "Summarize this in one sentence.", "maxTokens", maxTokens,
+                        "temperature", 0.7, "backend", "auto"));
+            case "summarizer":
+                return new Call(tool,
+                    "summarizer", Map.of("text", text.repeat(8), "max_length", 60),
+                    "summarize_text", Map.of("text", text.repeat(8), "maxLength", 60));
+            case "embedding":
+                return new Call(tool,
+                    "embedding", Map.of("text", text),
+                    "generate_embedding", Map.of("text", text));
+            case "code_analysis":
+                return new Call(tool,
+                    "code_analysis", Map.of("code", "// " + seq + "\n" + CODE, "language", "java"),
+                    "analyze_code", Map.of("code", "// " + seq + "\n" + CODE, "language", "java"));
+            default:
+                return new Call(tool,
+                    "translation", Map.of("text", text, "source_language", "en", "target_language", "fr"),
+                    "translate_text", Map.of("text", text, "sourceLanguage", "en", "targetLanguage", "fr"));
+        }
+    }
+}
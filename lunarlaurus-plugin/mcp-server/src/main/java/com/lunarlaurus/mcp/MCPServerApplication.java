@@ -2,6 +2,7 @@ package com.lunarlaurus.mcp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -25,6 +26,7 @@ public class MCPServerApplication {
     }
 
     @Bean
+    @ConditionalOnWebApplication
     public WebMvcConfigurer corsConfigurer() {
         return new WebMvcConfigurer() {
             @Override
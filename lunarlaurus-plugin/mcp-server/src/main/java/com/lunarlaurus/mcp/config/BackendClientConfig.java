@@ -0,0 +1,106 @@
+package com.lunarlaurus.mcp.config;
+
+import com.lunarlaurus.mcp.service.execution.CancellableCall;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+
+/**
+ * Backend HTTP Client Configuration
+ *
+ * Shared, pooled HTTP clients for the inference backends. Each backend class
+ * gets its own connection pool (bounded per endpoint) with keep-alive,
+ * connect/read timeouts and gzip response decompression, so requests reuse
+ * warm TCP connections and a stuck backend can't hang a caller forever.
+ *
+ * - llm.http.*       → GPU (Ollama) and CPU (llama.cpp) generation
+ * - embedding.http.* → embedding backend
+ *
+ * Requests register with the thread's CancellableCall, if any, so hedged
+ * calls can abort the losing request's connection.
+ */
+@Slf4j
+@Configuration
+public class BackendClientConfig {
+
+    @Bean
+    public RestTemplate llmRestTemplate(
+            @Value("${llm.http.max-connections:32}") int maxConnections,
+            @Value("${llm.http.max-per-endpoint:8}") int maxPerEndpoint,
+            @Value("${llm.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${llm.http.read-timeout-ms:180000}") long readTimeoutMs,
+            @Value("${llm.http.pool-timeout-ms:5000}") long poolTimeoutMs,
+            @Value("${llm.http.keep-alive-ms:60000}") long keepAliveMs,
+            @Value("${llm.http.compression:true}") boolean compression) {
+        return restTemplate("llm", maxConnections, maxPerEndpoint, connectTimeoutMs, readTimeoutMs,
+            poolTimeoutMs, keepAliveMs, compression);
+    }
+
+    @Bean
+    public RestTemplate embeddingRestTemplate(
+            @Value("${embedding.http.max-connections:16}") int maxConnections,
+            @Value("${embedding.http.max-per-endpoint:8}") int maxPerEndpoint,
+            @Value("${embedding.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${embedding.http.read-timeout-ms:30000}") long readTimeoutMs,
+            @Value("${embedding.http.pool-timeout-ms:5000}") long poolTimeoutMs,
+            @Value("${embedding.http.keep-alive-ms:60000}") long keepAliveMs,
+            @Value("${embedding.http.compression:true}") boolean compression) {
+        return restTemplate("embedding", maxConnections, maxPerEndpoint, connectTimeoutMs, readTimeoutMs,
+            poolTimeoutMs, keepAliveMs, compression);
+    }
+
+    private RestTemplate restTemplate(String name, int maxConnections, int maxPerEndpoint, long connectTimeoutMs,
+                                      long readTimeoutMs, long poolTimeoutMs, long keepAliveMs, boolean compression) {
+        log.info("Configuring {} HTTP client: pool={} (per endpoint {}), connect={}ms, read={}ms, gzip={}",
+            name, maxConnections, maxPerEndpoint, connectTimeoutMs, readTimeoutMs, compression);
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxPerEndpoint)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setTimeToLive(TimeValue.ofMilliseconds(keepAliveMs * 10))
+                .build())
+            .build();
+
+        HttpClientBuilder builder = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .build())
+            .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs));
+        if (!compression) {
+            builder.disableContentCompression();
+        }
+        CloseableHttpClient httpClient = builder.build();
+
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+                ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+                CancellableCall.register(request);
+                return request;
+            }
+        });
+    }
+}
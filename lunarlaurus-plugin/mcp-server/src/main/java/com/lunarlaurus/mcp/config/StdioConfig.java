@@ -0,0 +1,42 @@
+package com.lunarlaurus.mcp.config;
+
+import com.lunarlaurus.mcp.model.IndexedDocument;
+import com.lunarlaurus.mcp.model.SearchHit;
+import com.lunarlaurus.mcp.model.SourceFile;
+import com.lunarlaurus.mcp.service.residency.ModelResidency;
+import io.modelcontextprotocol.server.McpAsyncServer;
+import io.modelcontextprotocol.server.McpSyncServer;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Stdio Startup Configuration
+ *
+ * Claude Code starts a fresh server process per session and waits for it
+ * before the first tools/list, so the stdio profile trades warm-up work for
+ * startup time:
+ * - Beans are initialized lazily (spring.main.lazy-initialization), except
+ *   the MCP server itself, which must start reading stdin, and
+ *   ModelResidency, so models are still warmed while the client connects.
+ *   Tokenizer vocabularies, caches and the vector index load on first use.
+ * - No servlet or actuator beans: the controller, CORS config and health
+ *   indicator are web-only, and actuator endpoints are switched off.
+ *
+ * The same profile is baked into the AOT-processed context and the CDS
+ * archive built by the stdio-fast Maven profile, and into a native image;
+ * tool argument and result types are registered for JSON binding there.
+ */
+@Configuration
+@Profile("stdio")
+@RegisterReflectionForBinding({SourceFile.class, SearchHit.class, IndexedDocument.class})
+public class StdioConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerStdioBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(McpSyncServer.class, McpAsyncServer.class,
+            ModelResidency.class);
+    }
+}
@@ -0,0 +1,40 @@
+package com.lunarlaurus.mcp.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+/**
+ * Virtual Threads for MCP Tool Calls
+ *
+ * spring.threads.virtual.enabled moves Tomcat request handling, MVC
+ * streaming and the inference executor onto virtual threads. The MCP stdio
+ * server runs each tool call on Reactor's bounded elastic scheduler instead,
+ * which is only switched to virtual threads by a system property read when
+ * Reactor's Schedulers class loads. This sets it, before any bean exists,
+ * together with the scheduler's cap on concurrent tool calls
+ * (inference.virtual-threads.mcp-concurrency; Reactor's default is 10 per
+ * CPU). Properties already given on the command line are left alone.
+ *
+ * Registered in META-INF/spring.factories.
+ */
+public class VirtualThreadsEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String VIRTUAL = "reactor.schedulers.defaultBoundedElasticOnVirtualThreads";
+    private static final String SIZE = "reactor.schedulers.defaultBoundedElasticSize";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            return;
+        }
+        setIfAbsent(VIRTUAL, "true");
+        setIfAbsent(SIZE, environment.getProperty("inference.virtual-threads.mcp-concurrency", "1000"));
+    }
+
+    private static void setIfAbsent(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+}
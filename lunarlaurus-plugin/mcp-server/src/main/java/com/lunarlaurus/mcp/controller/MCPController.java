@@ -1,11 +1,21 @@
 package com.lunarlaurus.mcp.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lunarlaurus.mcp.model.*;
 import com.lunarlaurus.mcp.service.MCPService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 /**
  * MCP Protocol Controller
@@ -13,14 +23,21 @@ import org.springframework.web.bind.annotation.*;
  * Implements the Model Context Protocol endpoints:
  * - POST /mcp/list-tools: Returns available tools
  * - POST /mcp/call-tool: Executes a tool with given arguments
+ * - POST /mcp/call-tool/stream: Executes a tool, streaming tokens as SSE or NDJSON
+ *
+ * Not created in the stdio profile, which serves MCP over stdin/stdout only.
  */
 @Slf4j
 @RestController
+@ConditionalOnWebApplication
 @RequestMapping("/mcp")
 @RequiredArgsConstructor
 public class MCPController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final MCPService mcpService;
+    private final ObjectMapper objectMapper;
 
     /**
      * List all available tools
@@ -48,6 +65,56 @@ public class MCPController {
         }
     }
 
+    /**
+     * Execute a tool and stream output as Server-Sent Events.
+     * Emits "token" events while generating, then a single "result" event.
+     */
+    @PostMapping(value = "/call-tool/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> callToolSse(@RequestBody CallToolRequest request) {
+        log.info("Streaming tool (SSE): {}", request.getName());
+        return ResponseEntity.ok()
+            .contentType(MediaType.TEXT_EVENT_STREAM)
+            .body(out -> streamTool(request, out, true));
+    }
+
+    /**
+     * Execute a tool and stream output as newline-delimited JSON.
+     * Emits {"token": ...} lines while generating, then a final {"result": ...} line.
+     */
+    @PostMapping(value = "/call-tool/stream", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> callToolNdjson(@RequestBody CallToolRequest request) {
+        log.info("Streaming tool (NDJSON): {}", request.getName());
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+            .body(out -> streamTool(request, out, false));
+    }
+
+    private void streamTool(CallToolRequest request, OutputStream out, boolean sse) throws IOException {
+        CallToolResponse response;
+        try {
+            response = mcpService.callToolStreaming(request, token -> writeEvent(out, sse, "token", token));
+        } catch (Exception e) {
+            log.error("Error streaming tool: {}", request.getName(), e);
+            response = CallToolResponse.error(e.getMessage());
+        }
+        writeEvent(out, sse, "result", response);
+    }
+
+    private void writeEvent(OutputStream out, boolean sse, String event, Object data) {
+        try {
+            if (sse) {
+                String json = objectMapper.writeValueAsString(Map.of(event, data));
+                out.write(("event: " + event + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+            } else {
+                out.write(objectMapper.writeValueAsBytes(Map.of(event, data)));
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Health check endpoint
      */
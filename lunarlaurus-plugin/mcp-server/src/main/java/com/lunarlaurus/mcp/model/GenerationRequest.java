@@ -0,0 +1,34 @@
+package com.lunarlaurus.mcp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single text generation call into LocalLLMService, with the per-call
+ * options that travel alongside the prompt.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationRequest {
+    private String prompt;
+    private Integer maxTokens;
+    private Double temperature;
+    private String backend;
+
+    /** Tool that issued the call (e.g. "local_llm"); drives per-tool cache policy. */
+    private String tool;
+
+    /** Skip cache lookup for this call; the fresh result still refreshes the cache. */
+    private boolean bypassCache;
+
+    /**
+     * Conversation the call belongs to, if any. Calls of one session stick to
+     * the same backend endpoint (and llama.cpp slot) so the conversation so
+     * far stays in the backend's KV cache.
+     */
+    private String sessionId;
+}
@@ -0,0 +1,23 @@
+package com.lunarlaurus.mcp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * A document stored in the local vector index. Only a snippet of the
+ * original text is kept; the vector lives in the index under node.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexedDocument {
+    private String id;
+    private int node;
+    private String snippet;
+    private Map<String, String> metadata;
+}
@@ -0,0 +1,19 @@
+package com.lunarlaurus.mcp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHit {
+    private String id;
+    private double score;
+    private String snippet;
+    private Map<String, String> metadata;
+}
@@ -0,0 +1,19 @@
+package com.lunarlaurus.mcp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A file submitted for batch code analysis. When content is omitted the file
+ * is read from path, relative to code-analysis.root on the MCP server.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SourceFile {
+    private String path;
+    private String content;
+}
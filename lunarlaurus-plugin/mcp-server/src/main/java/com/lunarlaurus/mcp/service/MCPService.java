@@ -1,35 +1,47 @@
 package com.lunarlaurus.mcp.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lunarlaurus.mcp.model.*;
+import com.lunarlaurus.mcp.service.execution.ToolCallCoalescer;
+import com.lunarlaurus.mcp.service.execution.ToolCallMetrics;
+import com.lunarlaurus.mcp.service.index.VectorIndexService;
 import com.lunarlaurus.mcp.service.inference.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * MCP Service - Core logic for tool execution and routing
  * 
- * Implements intelligent routing:
- * - Short prompts (<2k tokens) → GPU (RTX4000)
- * - Medium prompts (2k-8k tokens) → CPU
- * - Long/complex prompts → Cloud fallback (if configured)
+ * Generation requests with model "auto" are routed by the BackendRouter
+ * (inside LocalLLMService) to the backend with the lowest predicted
+ * completion time that fits the prompt in its context window.
+ *
+ * Identical concurrent calls are coalesced into one backend execution.
+ * Every call is timed per tool by ToolCallMetrics.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MCPService {
 
+    private static final Set<String> TOOLS = Set.of("local_llm", "summarizer", "embedding", "code_analysis",
+        "code_analysis_batch", "translation", "upsert_document", "semantic_search");
+
     private final LocalLLMService localLLMService;
     private final SummarizerService summarizerService;
     private final EmbeddingService embeddingService;
+    private final EmbeddingBatcher embeddingBatcher;
     private final CodeAnalysisService codeAnalysisService;
     private final TranslationService translationService;
-
-    // Token thresholds for routing
-    private static final int GPU_MAX_TOKENS = 2000;
-    private static final int CPU_MAX_TOKENS = 8000;
+    private final VectorIndexService vectorIndexService;
+    private final ToolCallCoalescer toolCallCoalescer;
+    private final ToolCallMetrics toolCallMetrics;
+    private final ObjectMapper objectMapper;
 
     public ListToolsResponse listTools() {
         List<Tool> tools = new ArrayList<>();
@@ -62,6 +74,12 @@ public class MCPService {
             .inputSchema(createCodeAnalysisSchema())
             .build());
 
+        tools.add(Tool.builder()
+            .name("code_analysis_batch")
+            .description("Analyze a changeset of several files concurrently. Large files are split at class/method boundaries; unchanged units are served from cache.")
+            .inputSchema(createCodeAnalysisBatchSchema())
+            .build());
+
         // Translation tool
         tools.add(Tool.builder()
             .name("translation")
@@ -69,47 +87,136 @@ public class MCPService {
             .inputSchema(createTranslationSchema())
             .build());
 
+        // Vector index tools
+        tools.add(Tool.builder()
+            .name("upsert_document")
+            .description("Embed a document and store it in the local vector index, replacing any earlier version with the same id.")
+            .inputSchema(createUpsertDocumentSchema())
+            .build());
+
+        tools.add(Tool.builder()
+            .name("semantic_search")
+            .description("Search the local vector index for documents semantically similar to a query. Returns ids, scores and snippets.")
+            .inputSchema(createSemanticSearchSchema())
+            .build());
+
         return new ListToolsResponse(tools);
     }
 
     public CallToolResponse callTool(CallToolRequest request) {
+        return toolCallMetrics.record(metricTool(request.getName()), "http", () -> execute(request));
+    }
+
+    private CallToolResponse execute(CallToolRequest request) {
         String toolName = request.getName();
         Map<String, Object> arguments = request.getArguments();
 
         try {
-            switch (toolName) {
-                case "local_llm":
-                    return handleLocalLLM(arguments);
-                case "summarizer":
-                    return handleSummarizer(arguments);
-                case "embedding":
-                    return handleEmbedding(arguments);
-                case "code_analysis":
-                    return handleCodeAnalysis(arguments);
-                case "translation":
-                    return handleTranslation(arguments);
-                default:
-                    throw new IllegalArgumentException("Unknown tool: " + toolName);
-            }
+            return toolCallCoalescer.execute(toolName, arguments, samplingTemperature(toolName, arguments),
+                () -> dispatch(toolName, arguments));
         } catch (Exception e) {
             log.error("Error executing tool: {}", toolName, e);
             return CallToolResponse.error("Error executing " + toolName + ": " + e.getMessage());
         }
     }
 
-    private CallToolResponse handleLocalLLM(Map<String, Object> arguments) {
+    private CallToolResponse dispatch(String toolName, Map<String, Object> arguments) throws JsonProcessingException {
+        switch (toolName) {
+            case "local_llm":
+                return handleLocalLLM(arguments);
+            case "summarizer":
+                return handleSummarizer(arguments);
+            case "embedding":
+                return handleEmbedding(arguments);
+            case "code_analysis":
+                return handleCodeAnalysis(arguments);
+            case "code_analysis_batch":
+                return handleCodeAnalysisBatch(arguments);
+            case "translation":
+                return handleTranslation(arguments);
+            case "upsert_document":
+                return handleUpsertDocument(arguments);
+            case "semantic_search":
+                return handleSemanticSearch(arguments);
+            default:
+                throw new IllegalArgumentException("Unknown tool: " + toolName);
+        }
+    }
+
+    private static Double samplingTemperature(String toolName, Map<String, Object> arguments) {
+        if (!"local_llm".equals(toolName) || arguments == null) {
+            return null;
+        }
+        return ((Number) arguments.getOrDefault("temperature", 0.2)).doubleValue();
+    }
+
+    /**
+     * Execute a tool, forwarding generated text to onToken as the backend produces it.
+     * local_llm streams token by token; other tools complete normally and only
+     * deliver their final response.
+     */
+    public CallToolResponse callToolStreaming(CallToolRequest request, Consumer<String> onToken) {
+        if (!"local_llm".equals(request.getName())) {
+            return callTool(request);
+        }
+
+        return toolCallMetrics.record("local_llm", "http", () -> {
+            try {
+                return handleLocalLLMStreaming(request.getArguments(), onToken);
+            } catch (Exception e) {
+                log.error("Error streaming tool: {}", request.getName(), e);
+                return CallToolResponse.error("Error executing " + request.getName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Client-supplied names outside this set share one tag, keeping metric cardinality bounded
+    private static String metricTool(String toolName) {
+        return TOOLS.contains(toolName) ? toolName : "unknown";
+    }
+
+    private CallToolResponse handleLocalLLMStreaming(Map<String, Object> arguments, Consumer<String> onToken) {
         String prompt = (String) arguments.get("prompt");
         Integer maxTokens = (Integer) arguments.getOrDefault("max_tokens", 512);
         Double temperature = ((Number) arguments.getOrDefault("temperature", 0.2)).doubleValue();
         String model = (String) arguments.getOrDefault("model", "auto");
+        boolean bypassCache = Boolean.TRUE.equals(arguments.get("bypass_cache"));
+        String sessionId = (String) arguments.get("session_id");
 
-        // Estimate token count (rough estimate: 1 token ≈ 4 characters)
-        int estimatedTokens = prompt.length() / 4;
+        log.info("Local LLM streaming request - Prompt length: {}, Max tokens: {}", prompt.length(), maxTokens);
 
-        log.info("Local LLM request - Estimated tokens: {}, Max tokens: {}", estimatedTokens, maxTokens);
+        String result = localLLMService.generateStream(GenerationRequest.builder()
+            .prompt(prompt)
+            .maxTokens(maxTokens)
+            .temperature(temperature)
+            .backend(model)
+            .tool("local_llm")
+            .bypassCache(bypassCache)
+            .sessionId(sessionId)
+            .build(), onToken);
 
-        String result = localLLMService.generate(prompt, maxTokens, temperature, 
-            determineBackend(estimatedTokens, model));
+        return CallToolResponse.success(result);
+    }
+
+    private CallToolResponse handleLocalLLM(Map<String, Object> arguments) {
+        String prompt = (String) arguments.get("prompt");
+        Integer maxTokens = (Integer) arguments.getOrDefault("max_tokens", 512);
+        Double temperature = ((Number) arguments.getOrDefault("temperature", 0.2)).doubleValue();
+        String model = (String) arguments.getOrDefault("model", "auto");
+        boolean bypassCache = Boolean.TRUE.equals(arguments.get("bypass_cache"));
+        String sessionId = (String) arguments.get("session_id");
+
+        log.info("Local LLM request - Prompt length: {}, Max tokens: {}", prompt.length(), maxTokens);
+
+        String result = localLLMService.generate(GenerationRequest.builder()
+            .prompt(prompt)
+            .maxTokens(maxTokens)
+            .temperature(temperature)
+            .backend(model)
+            .tool("local_llm")
+            .bypassCache(bypassCache)
+            .sessionId(sessionId)
+            .build());
 
         return CallToolResponse.success(result);
     }
@@ -126,16 +233,30 @@ public class MCPService {
 
     private CallToolResponse handleEmbedding(Map<String, Object> arguments) {
         Object textObj = arguments.get("text");
-        
+        String format = (String) arguments.get("format");
+
         if (textObj instanceof String) {
             String text = (String) textObj;
-            float[] embedding = embeddingService.generateEmbedding(text);
-            return CallToolResponse.success("Generated embedding with " + embedding.length + " dimensions");
+            float[] embedding = embeddingBatcher.embed(text);
+            String summary = "Generated embedding with " + embedding.length + " dimensions";
+            if (format == null) {
+                return CallToolResponse.success(summary);
+            }
+            return CallToolResponse.success(summary + ": " + EmbeddingEncoding.parse(format).encode(embedding));
         } else if (textObj instanceof List) {
             @SuppressWarnings("unchecked")
             List<String> texts = (List<String>) textObj;
             List<float[]> embeddings = embeddingService.generateBatchEmbeddings(texts);
-            return CallToolResponse.success("Generated " + embeddings.size() + " embeddings");
+            String summary = "Generated " + embeddings.size() + " embeddings";
+            if (format == null) {
+                return CallToolResponse.success(summary);
+            }
+            EmbeddingEncoding encoding = EmbeddingEncoding.parse(format);
+            StringBuilder output = new StringBuilder(summary).append(':');
+            for (float[] embedding : embeddings) {
+                output.append('\n').append(encoding.encode(embedding));
+            }
+            return CallToolResponse.success(output.toString());
         }
         
         throw new IllegalArgumentException("Invalid text argument for embedding");
@@ -151,6 +272,21 @@ public class MCPService {
         return CallToolResponse.success(analysis);
     }
 
+    private CallToolResponse handleCodeAnalysisBatch(Map<String, Object> arguments) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> fileArgs = (List<Map<String, Object>>) arguments.get("files");
+        String language = (String) arguments.getOrDefault("language", "auto");
+
+        List<SourceFile> files = new ArrayList<>();
+        for (Map<String, Object> file : fileArgs) {
+            files.add(new SourceFile((String) file.get("path"), (String) file.get("content")));
+        }
+        log.info("Batch code analysis request - {} files", files.size());
+
+        String analysis = codeAnalysisService.analyzeBatch(files, language, null);
+        return CallToolResponse.success(analysis);
+    }
+
     private CallToolResponse handleTranslation(Map<String, Object> arguments) {
         String text = (String) arguments.get("text");
         String sourceLang = (String) arguments.getOrDefault("source_language", "auto");
@@ -162,21 +298,25 @@ public class MCPService {
         return CallToolResponse.success(translation);
     }
 
-    private String determineBackend(int estimatedTokens, String requestedModel) {
-        if (!"auto".equals(requestedModel)) {
-            return requestedModel;
-        }
+    private CallToolResponse handleUpsertDocument(Map<String, Object> arguments) {
+        String id = (String) arguments.get("id");
+        String text = (String) arguments.get("text");
+        @SuppressWarnings("unchecked")
+        Map<String, String> metadata = (Map<String, String>) arguments.get("metadata");
 
-        if (estimatedTokens < GPU_MAX_TOKENS) {
-            log.info("Routing to GPU backend (tokens: {})", estimatedTokens);
-            return "gpu";
-        } else if (estimatedTokens < CPU_MAX_TOKENS) {
-            log.info("Routing to CPU backend (tokens: {})", estimatedTokens);
-            return "cpu";
-        } else {
-            log.info("Request exceeds local capacity, consider cloud fallback (tokens: {})", estimatedTokens);
-            return "cpu"; // Still use CPU but with warning
-        }
+        IndexedDocument document = vectorIndexService.upsert(id, text, metadata);
+        return CallToolResponse.success("Indexed document " + document.getId()
+            + " (" + vectorIndexService.documentCount() + " documents in index)");
+    }
+
+    private CallToolResponse handleSemanticSearch(Map<String, Object> arguments) throws JsonProcessingException {
+        String query = (String) arguments.get("query");
+        int topK = ((Number) arguments.getOrDefault("top_k", 5)).intValue();
+
+        log.info("Semantic search request - top_k: {}", topK);
+
+        List<SearchHit> hits = vectorIndexService.search(query, topK);
+        return CallToolResponse.success(objectMapper.writeValueAsString(hits));
     }
 
     // Schema creation methods
@@ -190,6 +330,10 @@ public class MCPService {
         properties.put("temperature", Map.of("type", "number", "default", 0.2, "description", "Sampling temperature (0-1)"));
         properties.put("model", Map.of("type", "string", "default", "auto", "enum", List.of("auto", "gpu", "cpu"), 
             "description", "Backend selection: auto (smart routing), gpu (RTX4000), cpu (Intel 8260)"));
+        properties.put("bypass_cache", Map.of("type", "boolean", "default", false,
+            "description", "Force a fresh generation instead of returning a cached response"));
+        properties.put("session_id", Map.of("type", "string",
+            "description", "Conversation id; turns of one session reuse the backend's cached prompt prefix"));
         
         schema.put("properties", properties);
         schema.put("required", List.of("prompt"));
@@ -221,6 +365,8 @@ public class MCPService {
             Map.of("type", "array", "items", Map.of("type", "string"))
         ));
         properties.put("text", textProperty);
+        properties.put("format", Map.of("type", "string", "enum", List.of("text", "base64", "int8"),
+            "description", "Include vectors in the response: text (decimal), base64 (float32 little-endian) or int8 (quantized). Omit for dimensions only"));
         
         schema.put("properties", properties);
         schema.put("required", List.of("text"));
@@ -241,6 +387,27 @@ public class MCPService {
         return schema;
     }
 
+    private Map<String, Object> createCodeAnalysisBatchSchema() {
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("type", "object");
+
+        Map<String, Object> file = new HashMap<>();
+        file.put("type", "object");
+        file.put("properties", Map.of(
+            "path", Map.of("type", "string", "description", "File path; read relative to the server's code-analysis.root when content is omitted"),
+            "content", Map.of("type", "string", "description", "File content")));
+        file.put("required", List.of("path"));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("files", Map.of("type", "array", "items", file, "description", "Files to analyze"));
+        properties.put("language", Map.of("type", "string", "default", "auto",
+            "description", "Programming language (detected per file extension if not specified)"));
+
+        schema.put("properties", properties);
+        schema.put("required", List.of("files"));
+        return schema;
+    }
+
     private Map<String, Object> createTranslationSchema() {
         Map<String, Object> schema = new HashMap<>();
         schema.put("type", "object");
@@ -255,4 +422,32 @@ public class MCPService {
         schema.put("required", List.of("text", "target_language"));
         return schema;
     }
+
+    private Map<String, Object> createUpsertDocumentSchema() {
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("type", "object");
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("id", Map.of("type", "string", "description", "Unique document id (e.g. file path or chunk id)"));
+        properties.put("text", Map.of("type", "string", "description", "Document text to embed and index"));
+        properties.put("metadata", Map.of("type", "object", "additionalProperties", Map.of("type", "string"),
+            "description", "Optional string metadata returned with search hits"));
+
+        schema.put("properties", properties);
+        schema.put("required", List.of("id", "text"));
+        return schema;
+    }
+
+    private Map<String, Object> createSemanticSearchSchema() {
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("type", "object");
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("query", Map.of("type", "string", "description", "Natural language search query"));
+        properties.put("top_k", Map.of("type", "number", "default", 5, "description", "Number of results to return"));
+
+        schema.put("properties", properties);
+        schema.put("required", List.of("query"));
+        return schema;
+    }
 }
@@ -0,0 +1,190 @@
+package com.lunarlaurus.mcp.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Analysis Cache
+ *
+ * Per-unit code analysis results keyed by SHA-256 of (language, GPU model,
+ * CPU model, unit source), so re-analyzing a changeset after a small edit only
+ * sends the units whose code changed:
+ * - Heap tier: bounded LRU
+ * - Disk tier: one file per entry under code-analysis.cache.disk.directory, oldest evicted first
+ *
+ * Entries are content-addressed, so they never go stale and have no TTL;
+ * changing either model name starts a fresh key space.
+ */
+@Slf4j
+@Component
+public class AnalysisCache {
+
+    @Value("${code-analysis.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${code-analysis.cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${code-analysis.cache.disk.enabled:true}")
+    private boolean diskEnabled;
+
+    @Value("${code-analysis.cache.disk.directory:./data/analysis-cache}")
+    private String diskDirectory;
+
+    @Value("${code-analysis.cache.disk.max-entries:50000}")
+    private int maxDiskEntries;
+
+    @Value("${llm.gpu.model:mistral:7b}")
+    private String gpuModel;
+
+    @Value("${llm.cpu.model:mistral-7b-instruct}")
+    private String cpuModel;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    private Map<String, String> heap;
+    // Disk keys in insertion order, for eviction
+    private final LinkedHashMap<String, Boolean> diskKeys = new LinkedHashMap<>();
+
+    public AnalysisCache(MeterRegistry meterRegistry) {
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        heap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        if (enabled && diskEnabled) {
+            Path dir = Path.of(diskDirectory);
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(f -> f.getFileName().toString().endsWith(".txt"))
+                    .sorted(Comparator.comparing(AnalysisCache::lastModified))
+                    .forEach(f -> diskKeys.put(f.getFileName().toString().replace(".txt", ""), Boolean.TRUE));
+            }
+        }
+        log.info("Analysis cache {} (heap {} entries, disk {} entries)",
+            enabled ? "enabled" : "disabled", maxEntries, diskKeys.size());
+    }
+
+    /**
+     * Cached analysis of source in language, or null.
+     */
+    public String get(String language, String source) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(language, source);
+        synchronized (this) {
+            String cached = heap.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            if (!diskKeys.containsKey(key)) {
+                misses.increment();
+                return null;
+            }
+        }
+
+        try {
+            String text = Files.readString(Path.of(diskDirectory, key + ".txt"), StandardCharsets.UTF_8);
+            synchronized (this) {
+                heap.put(key, text);
+            }
+            hits.increment();
+            return text;
+        } catch (IOException e) {
+            synchronized (this) {
+                diskKeys.remove(key);
+            }
+            misses.increment();
+            return null;
+        }
+    }
+
+    public void put(String language, String source, String analysis) {
+        if (!enabled || analysis == null) {
+            return;
+        }
+        String key = key(language, source);
+        synchronized (this) {
+            heap.put(key, analysis);
+        }
+        if (diskEnabled) {
+            writeDisk(key, analysis);
+        }
+    }
+
+    private void writeDisk(String key, String text) {
+        Path file = Path.of(diskDirectory, key + ".txt");
+        try {
+            Path tmp = Files.createTempFile(Path.of(diskDirectory), key, ".tmp");
+            Files.writeString(tmp, text, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            String evict = null;
+            synchronized (this) {
+                diskKeys.remove(key);
+                diskKeys.put(key, Boolean.TRUE);
+                if (diskKeys.size() > maxDiskEntries) {
+                    evict = diskKeys.keySet().iterator().next();
+                    diskKeys.remove(evict);
+                }
+            }
+            if (evict != null) {
+                Files.deleteIfExists(Path.of(diskDirectory, evict + ".txt"));
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write analysis cache entry: {}", e.getMessage());
+        }
+    }
+
+    private String key(String language, String source) {
+        String material = language + '\u0000' + gpuModel + '\u0000' + cpuModel + '\u0000' + source;
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(material.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("code_analysis.cache.requests").tag("result", result)
+            .description("Per-unit code analysis cache lookups").register(meterRegistry);
+    }
+}
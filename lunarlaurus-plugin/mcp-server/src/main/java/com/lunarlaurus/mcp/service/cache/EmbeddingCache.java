@@ -0,0 +1,175 @@
+package com.lunarlaurus.mcp.service.cache;
+
+import com.lunarlaurus.mcp.service.storage.MappedVectorFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Embedding Cache
+ *
+ * Content-addressed cache of embeddings keyed by SHA-256(model, text):
+ * - Heap tier: bounded LRU of recently used vectors
+ * - Disk tier: memory-mapped float32 store that survives restarts
+ *
+ * The disk file is tagged with the embedding model, so changing embedding.model
+ * invalidates it on the next startup. Heap keys include the model as well.
+ */
+@Slf4j
+@Component
+public class EmbeddingCache {
+
+    private static final int KEY_BYTES = 32;
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${embedding.cache.max-heap-entries:10000}")
+    private int maxHeapEntries;
+
+    @Value("${embedding.cache.disk.enabled:true}")
+    private boolean diskEnabled;
+
+    @Value("${embedding.cache.disk.path:./data/embedding-cache.f32}")
+    private String diskPath;
+
+    @Value("${embedding.cache.disk.max-entries:1000000}")
+    private int maxDiskEntries;
+
+    @Value("${embedding.model:nomic-embed-text}")
+    private String embeddingModel;
+
+    private final Counter heapHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    private Map<ByteBuffer, float[]> heap;
+    private final Map<ByteBuffer, Integer> diskIndex = new HashMap<>();
+    private MappedVectorFile disk;
+
+    public EmbeddingCache(MeterRegistry meterRegistry) {
+        this.heapHits = Counter.builder("embedding.cache.requests").tag("result", "hit_heap")
+            .description("Embedding cache lookups").register(meterRegistry);
+        this.diskHits = Counter.builder("embedding.cache.requests").tag("result", "hit_disk")
+            .description("Embedding cache lookups").register(meterRegistry);
+        this.misses = Counter.builder("embedding.cache.requests").tag("result", "miss")
+            .description("Embedding cache lookups").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        heap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, float[]> eldest) {
+                return size() > maxHeapEntries;
+            }
+        };
+
+        if (enabled && diskEnabled) {
+            int dimension = MappedVectorFile.storedDimension(Path.of(diskPath), modelTag());
+            if (dimension > 0) {
+                openDisk(dimension);
+            }
+        }
+        log.info("Embedding cache {} (heap {} entries, disk {} entries, model {})",
+            enabled ? "enabled" : "disabled", maxHeapEntries, disk != null ? disk.size() : 0, embeddingModel);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (disk != null) {
+            disk.close();
+        }
+    }
+
+    /**
+     * Look up a cached embedding, or null on miss. Returns a copy the caller may modify.
+     */
+    public float[] get(String text) {
+        if (!enabled) {
+            return null;
+        }
+        ByteBuffer key = key(text);
+        synchronized (this) {
+            float[] vector = heap.get(key);
+            if (vector != null) {
+                heapHits.increment();
+                return vector.clone();
+            }
+
+            Integer slot = diskIndex.get(key);
+            if (slot != null) {
+                vector = disk.readVector(slot);
+                heap.put(key, vector);
+                diskHits.increment();
+                return vector.clone();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String text, float[] embedding) {
+        if (!enabled) {
+            return;
+        }
+        ByteBuffer key = key(text);
+        float[] vector = embedding.clone();
+        synchronized (this) {
+            heap.put(key, vector);
+            if (!diskEnabled || diskIndex.containsKey(key)) {
+                return;
+            }
+            if (disk == null || disk.dimension() != vector.length) {
+                openDisk(vector.length);
+            }
+            if (disk.size() >= maxDiskEntries) {
+                return;
+            }
+            diskIndex.put(key, disk.append(key.array(), vector));
+        }
+    }
+
+    private void openDisk(int dimension) {
+        if (disk != null) {
+            log.warn("Embedding dimension changed ({} -> {}), resetting disk cache", disk.dimension(), dimension);
+            disk.close();
+            diskIndex.clear();
+        }
+        disk = MappedVectorFile.open(Path.of(diskPath), dimension, KEY_BYTES, modelTag());
+        for (int slot = 0; slot < disk.size(); slot++) {
+            byte[] key = new byte[KEY_BYTES];
+            disk.readKey(slot, key);
+            diskIndex.put(ByteBuffer.wrap(key), slot);
+        }
+    }
+
+    private long modelTag() {
+        return ByteBuffer.wrap(sha256(embeddingModel)).getLong();
+    }
+
+    private ByteBuffer key(String text) {
+        return ByteBuffer.wrap(sha256(embeddingModel + '\u0000' + text));
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.lunarlaurus.mcp.service.cache;
+
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Response Cache
+ *
+ * Exact-match cache of LLM generations keyed by SHA-256 of
+ * (backend, model, maxTokens, temperature, prompt):
+ * - Heap tier: bounded LRU
+ * - Disk tier: one file per entry under llm.cache.disk.directory, oldest evicted first
+ *
+ * Only low-temperature requests are cached (llm.cache.max-temperature), since
+ * higher temperatures are expected to vary. Both settings can be overridden per
+ * tool with llm.cache.tools.&lt;tool&gt;.enabled / .max-temperature.
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    @Value("${llm.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${llm.cache.max-temperature:0.3}")
+    private double maxTemperature;
+
+    @Value("${llm.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${llm.cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${llm.cache.disk.enabled:true}")
+    private boolean diskEnabled;
+
+    @Value("${llm.cache.disk.directory:./data/response-cache}")
+    private String diskDirectory;
+
+    @Value("${llm.cache.disk.max-entries:10000}")
+    private int maxDiskEntries;
+
+    private final Environment environment;
+    private final Counter heapHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter bypasses;
+
+    private Map<String, CachedResponse> heap;
+    // Disk keys in insertion order, for eviction
+    private final LinkedHashMap<String, Boolean> diskKeys = new LinkedHashMap<>();
+
+    public ResponseCache(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.heapHits = counter(meterRegistry, "hit_heap");
+        this.diskHits = counter(meterRegistry, "hit_disk");
+        this.misses = counter(meterRegistry, "miss");
+        this.bypasses = counter(meterRegistry, "bypass");
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        heap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        if (enabled && diskEnabled) {
+            Path dir = Path.of(diskDirectory);
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(f -> f.getFileName().toString().endsWith(".txt"))
+                    .sorted(Comparator.comparing(ResponseCache::lastModified))
+                    .forEach(f -> diskKeys.put(f.getFileName().toString().replace(".txt", ""), Boolean.TRUE));
+            }
+        }
+        log.info("Response cache {} (heap {} entries, disk {} entries, ttl {}m, max temperature {})",
+            enabled ? "enabled" : "disabled", maxEntries, diskKeys.size(), ttlMinutes, maxTemperature);
+    }
+
+    /**
+     * Whether this request may be served from / stored in the cache.
+     */
+    public boolean isCacheable(GenerationRequest request) {
+        String tool = request.getTool() != null ? request.getTool() : "default";
+        boolean toolEnabled = environment.getProperty("llm.cache.tools." + tool + ".enabled", Boolean.class, enabled);
+        double toolMaxTemperature = environment.getProperty(
+            "llm.cache.tools." + tool + ".max-temperature", Double.class, maxTemperature);
+        return enabled && toolEnabled && request.getTemperature() <= toolMaxTemperature;
+    }
+
+    /**
+     * Cached text for the request, or null. Honors the request's bypass flag.
+     */
+    public String get(GenerationRequest request, String model) {
+        if (request.isBypassCache()) {
+            bypasses.increment();
+            return null;
+        }
+
+        String key = key(request, model);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            CachedResponse cached = heap.get(key);
+            if (cached != null && !expired(cached.createdAt(), now)) {
+                heapHits.increment();
+                return cached.text();
+            }
+            if (cached != null) {
+                heap.remove(key);
+            }
+            if (!diskKeys.containsKey(key)) {
+                misses.increment();
+                return null;
+            }
+        }
+
+        String text = readDisk(key, now);
+        if (text == null) {
+            misses.increment();
+            return null;
+        }
+        synchronized (this) {
+            heap.put(key, new CachedResponse(text, now));
+        }
+        diskHits.increment();
+        return text;
+    }
+
+    public void put(GenerationRequest request, String model, String text) {
+        if (text == null) {
+            return;
+        }
+        String key = key(request, model);
+        synchronized (this) {
+            heap.put(key, new CachedResponse(text, System.currentTimeMillis()));
+        }
+        if (diskEnabled) {
+            writeDisk(key, text);
+        }
+    }
+
+    private String readDisk(String key, long now) {
+        Path file = Path.of(diskDirectory, key + ".txt");
+        try {
+            if (expired(Files.getLastModifiedTime(file).toMillis(), now)) {
+                Files.deleteIfExists(file);
+                synchronized (this) {
+                    diskKeys.remove(key);
+                }
+                return null;
+            }
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            synchronized (this) {
+                diskKeys.remove(key);
+            }
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, String text) {
+        Path file = Path.of(diskDirectory, key + ".txt");
+        try {
+            Path tmp = Files.createTempFile(Path.of(diskDirectory), key, ".tmp");
+            Files.writeString(tmp, text, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            String evict = null;
+            synchronized (this) {
+                diskKeys.remove(key);
+                diskKeys.put(key, Boolean.TRUE);
+                if (diskKeys.size() > maxDiskEntries) {
+                    evict = diskKeys.keySet().iterator().next();
+                    diskKeys.remove(evict);
+                }
+            }
+            if (evict != null) {
+                Files.deleteIfExists(Path.of(diskDirectory, evict + ".txt"));
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write response cache entry: {}", e.getMessage());
+        }
+    }
+
+    private boolean expired(long createdAt, long now) {
+        return now - createdAt > Duration.ofMinutes(ttlMinutes).toMillis();
+    }
+
+    private static String key(GenerationRequest request, String model) {
+        String material = request.getBackend() + '\u0000' + model + '\u0000' + request.getMaxTokens()
+            + '\u0000' + request.getTemperature() + '\u0000' + request.getPrompt();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(material.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("llm.cache.requests").tag("result", result)
+            .description("LLM response cache lookups").register(meterRegistry);
+    }
+
+    private record CachedResponse(String text, long createdAt) {
+    }
+}
@@ -0,0 +1,215 @@
+package com.lunarlaurus.mcp.service.cache;
+
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import com.lunarlaurus.mcp.service.execution.InferenceExecutor;
+import com.lunarlaurus.mcp.service.inference.EmbeddingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Semantic Response Cache
+ *
+ * Optional cache that answers near-duplicate prompts (whitespace or wording
+ * changes) with a stored generation. Prompts are embedded with EmbeddingService
+ * and compared by cosine similarity against earlier prompts of the same tool,
+ * backend, model and token budget, as ResponseCache keys them; a match at or
+ * above llm.semantic-cache.threshold is a hit.
+ *
+ * A sample of hits (llm.semantic-cache.audit-rate) is re-generated in the
+ * background and the two answers compared. Answers that diverge are counted as
+ * false positives and the entry is evicted, so the threshold can be tuned from
+ * the llm.semantic_cache.audits metric.
+ */
+@Slf4j
+@Component
+public class SemanticResponseCache {
+
+    @Value("${llm.semantic-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${llm.semantic-cache.tools:local_llm,summarize_text}")
+    private List<String> tools;
+
+    @Value("${llm.semantic-cache.threshold:0.97}")
+    private double threshold;
+
+    @Value("${llm.semantic-cache.max-temperature:0.3}")
+    private double maxTemperature;
+
+    @Value("${llm.semantic-cache.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${llm.semantic-cache.max-prompt-chars:8000}")
+    private int maxPromptChars;
+
+    @Value("${llm.semantic-cache.audit-rate:0.05}")
+    private double auditRate;
+
+    @Value("${llm.semantic-cache.audit-answer-threshold:0.9}")
+    private double auditAnswerThreshold;
+
+    private final EmbeddingService embeddingService;
+    private final InferenceExecutor inferenceExecutor;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter auditsConfirmed;
+    private final Counter auditsFalsePositive;
+    private final DistributionSummary hitSimilarity;
+
+    // Newest first; bounded by maxEntries
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    public SemanticResponseCache(EmbeddingService embeddingService, InferenceExecutor inferenceExecutor,
+                                 MeterRegistry meterRegistry) {
+        this.embeddingService = embeddingService;
+        this.inferenceExecutor = inferenceExecutor;
+        this.hits = Counter.builder("llm.semantic_cache.requests").tag("result", "hit")
+            .description("Semantic cache lookups").register(meterRegistry);
+        this.misses = Counter.builder("llm.semantic_cache.requests").tag("result", "miss")
+            .description("Semantic cache lookups").register(meterRegistry);
+        this.auditsConfirmed = Counter.builder("llm.semantic_cache.audits").tag("result", "confirmed")
+            .description("Audited semantic cache hits").register(meterRegistry);
+        this.auditsFalsePositive = Counter.builder("llm.semantic_cache.audits").tag("result", "false_positive")
+            .description("Audited semantic cache hits").register(meterRegistry);
+        this.hitSimilarity = DistributionSummary.builder("llm.semantic_cache.hit.similarity")
+            .description("Prompt cosine similarity of semantic cache hits")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Look up a semantically equivalent earlier prompt for the same backend and
+     * model. Returns null when the request is not eligible or its prompt can't be
+     * embedded; otherwise a Lookup whose answer is null on a miss. regenerate
+     * produces a fresh answer and is only called for audits.
+     */
+    public Lookup lookup(GenerationRequest request, String model, Supplier<String> regenerate) {
+        if (!enabled || request.isBypassCache() || !tools.contains(request.getTool())
+                || request.getTemperature() > maxTemperature || request.getPrompt().length() > maxPromptChars) {
+            return null;
+        }
+
+        float[] embedding;
+        try {
+            embedding = normalize(embeddingService.generateEmbedding(request.getPrompt()));
+        } catch (RuntimeException e) {
+            // The cache is optional: without an embedding, generate as if it were off
+            log.warn("Semantic cache lookup skipped for {}: embedding failed: {}", request.getTool(), e.getMessage());
+            misses.increment();
+            return null;
+        }
+        Entry best = null;
+        double bestScore = -1;
+        synchronized (this) {
+            for (Entry entry : entries) {
+                if (!entry.tool().equals(request.getTool()) || !Objects.equals(entry.backend(), request.getBackend())
+                        || !Objects.equals(entry.model(), model) || !entry.maxTokens().equals(request.getMaxTokens())
+                        || entry.embedding().length != embedding.length) {
+                    continue;
+                }
+                double score = dot(entry.embedding(), embedding);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = entry;
+                }
+            }
+        }
+
+        if (best == null || bestScore < threshold) {
+            misses.increment();
+            return new Lookup(embedding, null);
+        }
+
+        hits.increment();
+        hitSimilarity.record(bestScore);
+        log.info("Semantic cache hit for {} (similarity {})", request.getTool(), String.format("%.4f", bestScore));
+        if (ThreadLocalRandom.current().nextDouble() < auditRate) {
+            audit(best, regenerate);
+        }
+        return new Lookup(embedding, best.answer());
+    }
+
+    /**
+     * Remember the answer generated after a miss.
+     */
+    public void store(GenerationRequest request, String model, Lookup lookup, String answer) {
+        if (lookup == null || answer == null) {
+            return;
+        }
+        synchronized (this) {
+            entries.addFirst(new Entry(request.getTool(), request.getBackend(), model, request.getMaxTokens(),
+                lookup.embedding(), answer));
+            while (entries.size() > maxEntries) {
+                entries.removeLast();
+            }
+        }
+    }
+
+    private void audit(Entry entry, Supplier<String> regenerate) {
+        inferenceExecutor.submit(() -> {
+            String fresh = regenerate.get();
+            float[] cachedAnswer = normalize(embeddingService.generateEmbedding(entry.answer()));
+            float[] freshAnswer = normalize(embeddingService.generateEmbedding(fresh));
+            double similarity = dot(cachedAnswer, freshAnswer);
+            if (similarity >= auditAnswerThreshold) {
+                auditsConfirmed.increment();
+            } else {
+                auditsFalsePositive.increment();
+                log.warn("Semantic cache false positive for {} (answer similarity {}), evicting entry",
+                    entry.tool(), String.format("%.4f", similarity));
+                synchronized (this) {
+                    entries.remove(entry);
+                }
+            }
+            return null;
+        }).exceptionally(e -> {
+            log.warn("Semantic cache audit failed: {}", e.getMessage());
+            return null;
+        });
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float scale = norm > 0 ? (float) (1.0 / Math.sqrt(norm)) : 0f;
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Result of a lookup: the prompt embedding (reused when storing) and the cached answer, if any.
+     */
+    public record Lookup(float[] embedding, String answer) {
+        public boolean hit() {
+            return answer != null;
+        }
+    }
+
+    private record Entry(String tool, String backend, String model, Integer maxTokens, float[] embedding,
+                         String answer) {
+    }
+}
@@ -0,0 +1,208 @@
+package com.lunarlaurus.mcp.service.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Translation Memory
+ *
+ * Persistent store of translated segments keyed by SHA-256 of
+ * (source language, target language, model, normalized segment), where
+ * normalization is Unicode NFC with whitespace collapsed. Repeated sentences
+ * (UI strings, boilerplate) are translated once.
+ *
+ * Entries live in a bounded heap LRU backed by an append-only NDJSON journal
+ * at translation.memory.path, replayed on startup and compacted (at startup
+ * or on append) whenever it has grown to twice the live entries.
+ */
+@Slf4j
+@Component
+public class TranslationMemory {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Value("${translation.memory.enabled:true}")
+    private boolean enabled;
+
+    @Value("${translation.memory.path:./data/translation-memory.ndjson}")
+    private String path;
+
+    @Value("${translation.memory.max-entries:200000}")
+    private int maxEntries;
+
+    private final ObjectMapper objectMapper;
+    private final Counter hits;
+    private final Counter misses;
+
+    private Map<String, String> entries;
+    private BufferedWriter journal;
+    private long journalLines;
+
+    public TranslationMemory(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        if (!enabled) {
+            log.info("Translation memory disabled");
+            return;
+        }
+
+        Path file = Path.of(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        long lines = 0;
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines++;
+                    try {
+                        JsonNode entry = objectMapper.readTree(line);
+                        entries.put(entry.get("k").asText(), entry.get("t").asText());
+                    } catch (Exception e) {
+                        log.debug("Skipping damaged translation memory line {}", lines);
+                    }
+                }
+            }
+        }
+        journalLines = lines;
+        if (needsCompaction()) {
+            compact(file);
+        }
+        journal = openJournal(file);
+        log.info("Translation memory loaded {} segments from {}", entries.size(), file);
+    }
+
+    /**
+     * Stored translation of segment, or null.
+     */
+    public String get(String sourceLang, String targetLang, String model, String segment) {
+        if (!enabled) {
+            return null;
+        }
+        String translation;
+        synchronized (this) {
+            translation = entries.get(key(sourceLang, targetLang, model, segment));
+        }
+        (translation != null ? hits : misses).increment();
+        return translation;
+    }
+
+    public void put(String sourceLang, String targetLang, String model, String segment, String translation) {
+        if (!enabled || translation == null) {
+            return;
+        }
+        String key = key(sourceLang, targetLang, model, segment);
+        synchronized (this) {
+            if (translation.equals(entries.put(key, translation))) {
+                return;
+            }
+            try {
+                journal.write(objectMapper.writeValueAsString(Map.of("k", key, "t", translation)));
+                journal.newLine();
+                journal.flush();
+                journalLines++;
+                if (needsCompaction()) {
+                    // Replaced and evicted segments are dead lines; rewrite the live ones
+                    Path file = Path.of(path);
+                    journal.close();
+                    try {
+                        compact(file);
+                    } finally {
+                        journal = openJournal(file);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Cannot append to translation memory: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The form a segment is matched by: NFC, whitespace collapsed, trimmed.
+     */
+    public static String normalize(String segment) {
+        return WHITESPACE.matcher(Normalizer.normalize(segment, Normalizer.Form.NFC)).replaceAll(" ").strip();
+    }
+
+    private boolean needsCompaction() {
+        return journalLines > 2L * Math.max(1, entries.size());
+    }
+
+    private static BufferedWriter openJournal(Path file) throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void compact(Path file) throws IOException {
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "translation-memory", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                writer.write(objectMapper.writeValueAsString(Map.of("k", entry.getKey(), "t", entry.getValue())));
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journalLines = entries.size();
+        log.info("Compacted translation memory to {} segments", entries.size());
+    }
+
+    private static String key(String sourceLang, String targetLang, String model, String segment) {
+        String material = sourceLang + '\u0000' + targetLang + '\u0000' + model + '\u0000' + normalize(segment);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(material.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Cannot close translation memory journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("translation.memory.requests").tag("result", result)
+            .description("Translation memory segment lookups").register(meterRegistry);
+    }
+}
@@ -0,0 +1,240 @@
+package com.lunarlaurus.mcp.service.execution;
+
+import com.lunarlaurus.mcp.service.pool.BackendPools;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission Controller
+ *
+ * Bounds the generation calls each backend runs at once to its slot count
+ * (llm.&lt;backend&gt;.slots per endpoint, times the endpoints in its pool).
+ * Calls beyond that wait in a bounded per-backend queue ordered by priority
+ * class, then arrival:
+ * - interactive (default): local_llm, analyze_code, translate_text, ...
+ * - bulk: tools listed under admission.tools.&lt;tool&gt;.priority: bulk
+ *
+ * A call arriving at a full queue is rejected at once; a queued call is shed
+ * once it has waited longer than its class's admission.max-wait-ms. Both
+ * surface as BackendOverloadedException. Freed slots are handed straight to
+ * the next waiter, so a burst of bulk work can't starve interactive calls.
+ * A queued CancellableCall (a hedge loser) that is cancelled leaves the
+ * queue at once.
+ */
+@Slf4j
+@Component
+public class AdmissionController {
+
+    public enum Priority { INTERACTIVE, BULK }
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${admission.max-wait-ms.interactive:30000}")
+    private long interactiveMaxWaitMs;
+
+    @Value("${admission.max-wait-ms.bulk:300000}")
+    private long bulkMaxWaitMs;
+
+    @Value("${llm.gpu.slots:2}")
+    private int gpuSlots;
+
+    @Value("${llm.cpu.slots:1}")
+    private int cpuSlots;
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final BackendPools backendPools;
+    private final Map<String, Gate> gates = new HashMap<>();
+    private final AtomicLong arrivals = new AtomicLong();
+
+    public AdmissionController(Environment environment, MeterRegistry meterRegistry, BackendPools backendPools) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.backendPools = backendPools;
+    }
+
+    @PostConstruct
+    public void init() {
+        gates.put("gpu", new Gate("gpu", gpuSlots * backendPools.endpointCount("gpu")));
+        gates.put("cpu", new Gate("cpu", cpuSlots * backendPools.endpointCount("cpu")));
+        for (Gate gate : gates.values()) {
+            Gauge.builder("backend.queue.depth", gate, Gate::depth)
+                .tag("backend", gate.backend).description("Generation calls waiting for a backend slot")
+                .register(meterRegistry);
+        }
+        log.info("Admission control {} (gpu slots {}, cpu slots {}, queue capacity {})",
+            enabled ? "enabled" : "disabled", gates.get("gpu").slots, gates.get("cpu").slots, queueCapacity);
+    }
+
+    public Priority priorityOf(String tool) {
+        String configured = environment.getProperty("admission.tools." + (tool != null ? tool : "default") + ".priority");
+        return "bulk".equalsIgnoreCase(configured) ? Priority.BULK : Priority.INTERACTIVE;
+    }
+
+    /**
+     * Calls waiting for a slot on backend.
+     */
+    public int queued(String backend) {
+        Gate gate = gates.get(backend);
+        return gate != null ? gate.depth() : 0;
+    }
+
+    /**
+     * Wait for a slot on backend. Close the returned Permit when the backend call ends.
+     */
+    public Permit acquire(String backend, String tool) {
+        Gate gate = gates.get(backend);
+        if (!enabled || gate == null) {
+            return new Permit(null);
+        }
+        Priority priority = priorityOf(tool);
+        long maxWaitMs = priority == Priority.BULK ? bulkMaxWaitMs : interactiveMaxWaitMs;
+        long start = System.nanoTime();
+        gate.acquire(priority, maxWaitMs, tool);
+        Timer.builder("backend.queue.wait").tag("backend", backend).tag("priority", priority.name().toLowerCase())
+            .description("Time generation calls waited for a backend slot")
+            .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Permit(gate);
+    }
+
+    private void count(String backend, String result) {
+        meterRegistry.counter("backend.admission", "backend", backend, "result", result).increment();
+    }
+
+    public static final class Permit implements AutoCloseable {
+
+        private final Gate gate;
+        private boolean released;
+
+        private Permit(Gate gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void close() {
+            if (!released && gate != null) {
+                gate.release();
+            }
+            released = true;
+        }
+    }
+
+    private final class Gate {
+
+        private final String backend;
+        private final int slots;
+        private int available;
+        private final PriorityQueue<Waiter> waiting = new PriorityQueue<>();
+
+        private Gate(String backend, int slots) {
+            this.backend = backend;
+            this.slots = Math.max(1, slots);
+            this.available = this.slots;
+        }
+
+        synchronized int depth() {
+            return waiting.size();
+        }
+
+        void acquire(Priority priority, long maxWaitMs, String tool) {
+            if (CancellableCall.currentCancelled()) {
+                throw new CancellationException(tool + " was cancelled before admission");
+            }
+            Waiter waiter;
+            synchronized (this) {
+                if (available > 0 && waiting.isEmpty()) {
+                    available--;
+                    count(backend, "admitted");
+                    return;
+                }
+                if (waiting.size() >= queueCapacity) {
+                    count(backend, "rejected");
+                    throw new BackendOverloadedException(backend + " backend queue is full ("
+                        + waiting.size() + " waiting), try again later");
+                }
+                waiter = new Waiter(priority, arrivals.incrementAndGet());
+                waiting.add(waiter);
+            }
+            // A cancelled hedge loser leaves the queue instead of taking a slot first
+            CancellableCall.register((Cancellable) () -> waiter.granted.cancel(false));
+
+            try {
+                waiter.granted.get(maxWaitMs, TimeUnit.MILLISECONDS);
+                count(backend, "admitted");
+            } catch (TimeoutException e) {
+                abandon(waiter);
+                count(backend, "shed");
+                log.warn("Shedding {} call after waiting {}ms for the {} backend", tool, maxWaitMs, backend);
+                throw new BackendOverloadedException(backend + " backend busy: " + tool
+                    + " waited " + maxWaitMs + "ms without a slot");
+            } catch (CancellationException e) {
+                abandon(waiter);
+                count(backend, "cancelled");
+                throw new CancellationException(tool + " was cancelled while waiting for the " + backend + " backend");
+            } catch (InterruptedException e) {
+                abandon(waiter);
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for the " + backend + " backend");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        /**
+         * Leave the queue; if a slot was handed over in the meantime, pass it on.
+         */
+        private void abandon(Waiter waiter) {
+            boolean holdsSlot;
+            synchronized (this) {
+                holdsSlot = !waiting.remove(waiter);
+            }
+            if (holdsSlot) {
+                release();
+            }
+        }
+
+        synchronized void release() {
+            Waiter next = waiting.poll();
+            if (next != null) {
+                next.granted.complete(null);
+            } else {
+                available++;
+            }
+        }
+    }
+
+    private record Waiter(Priority priority, long arrival, CompletableFuture<Void> granted)
+            implements Comparable<Waiter> {
+
+        Waiter(Priority priority, long arrival) {
+            this(priority, arrival, new CompletableFuture<>());
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(arrival, other.arrival);
+        }
+    }
+}
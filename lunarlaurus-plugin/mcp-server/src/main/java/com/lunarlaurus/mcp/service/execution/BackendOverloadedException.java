@@ -0,0 +1,14 @@
+package com.lunarlaurus.mcp.service.execution;
+
+/**
+ * Thrown when a backend call is not admitted: the backend's queue is full, or
+ * the call waited in it past its priority's deadline.
+ */
+public class BackendOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BackendOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,62 @@
+package com.lunarlaurus.mcp.service.execution;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * A unit of backend work that another thread can abort.
+ *
+ * While run() executes, every HTTP request the pooled backend clients create
+ * on that thread registers itself here (see BackendClientConfig); cancel()
+ * aborts them, closing the connection so a blocked read returns at once
+ * instead of waiting for the read timeout.
+ */
+public final class CancellableCall {
+
+    private static final ThreadLocal<CancellableCall> CURRENT = new ThreadLocal<>();
+
+    private final List<Cancellable> requests = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    public <T> T run(Supplier<T> body) {
+        CURRENT.set(this);
+        try {
+            return body.get();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        requests.forEach(Cancellable::cancel);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Attach a backend request created on the current thread to its call, if any.
+     */
+    public static void register(Object request) {
+        CancellableCall call = CURRENT.get();
+        if (call != null && request instanceof Cancellable cancellable) {
+            call.requests.add(cancellable);
+            if (call.cancelled) {
+                cancellable.cancel();
+            }
+        }
+    }
+
+    /**
+     * Whether the current thread is running a call that has been cancelled.
+     */
+    public static boolean currentCancelled() {
+        CancellableCall call = CURRENT.get();
+        return call != null && call.cancelled;
+    }
+}
@@ -0,0 +1,130 @@
+package com.lunarlaurus.mcp.service.execution;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Inference Executor
+ *
+ * Shared worker pool for fanning out blocking backend calls (batch embeddings,
+ * chunked summaries, per-unit code analysis). Callers bound their own
+ * concurrency per operation; the pool size caps the total.
+ *
+ * With spring.threads.virtual.enabled every task gets its own virtual thread
+ * instead, and inference.executor.threads no longer applies: the total is
+ * bounded by admission slots and the backend connection pools, not by
+ * threads parked on backend I/O.
+ *
+ * Deliberately not exposed as a java.util.concurrent.Executor bean so Spring
+ * Boot's applicationTaskExecutor (used by MVC async/streaming) stays in place.
+ */
+@Slf4j
+@Component
+public class InferenceExecutor {
+
+    private final ExecutorService executor;
+
+    public InferenceExecutor(@Value("${inference.executor.threads:32}") int threads,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("inference-", 1).factory());
+            log.info("Inference executor started on virtual threads");
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "inference-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+        log.info("Inference executor started with {} threads", threads);
+    }
+
+    /**
+     * Run a task asynchronously on the inference pool.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /**
+     * Apply fn to every item with at most maxConcurrency calls in flight,
+     * returning results in input order. The first failure stops remaining
+     * work and is rethrown to the caller.
+     */
+    public <T, R> List<R> mapBounded(List<T> items, int maxConcurrency, Function<T, R> fn) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        if (items.size() == 1 || maxConcurrency <= 1) {
+            List<R> results = new ArrayList<>(items.size());
+            for (T item : items) {
+                results.add(fn.apply(item));
+            }
+            return results;
+        }
+
+        Object[] results = new Object[items.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        Runnable worker = () -> {
+            int i;
+            while (failure.get() == null && (i = next.getAndIncrement()) < items.size()) {
+                try {
+                    results[i] = fn.apply(items.get(i));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+
+        // The calling thread works too, so nested fan-outs still progress when the pool is saturated
+        int workers = Math.min(maxConcurrency, items.size());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workers - 1];
+        for (int w = 0; w < futures.length; w++) {
+            futures[w] = CompletableFuture.runAsync(worker, executor);
+        }
+        worker.run();
+
+        try {
+            CompletableFuture.allOf(futures).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Arrays.stream(futures).forEach(f -> f.cancel(true));
+            throw new IllegalStateException("Interrupted while waiting for parallel inference", e);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<R> ordered = (List<R>) Arrays.asList(results);
+        return ordered;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,286 @@
+package com.lunarlaurus.mcp.service.execution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Request Hedger
+ *
+ * Opt-in tail-latency protection for short generation calls (llm.hedging.*).
+ * The primary attempt runs on the inference pool; if it hasn't produced its
+ * first token within the backend's recent first-token latency percentile
+ * (p95 by default), a backup attempt is started on another backend or
+ * endpoint. Whichever attempt emits a token first wins: only its tokens reach
+ * the caller, and the other attempt is cancelled, aborting its connection.
+ *
+ * Hedges draw on a budget that every eligible request tops up by
+ * budget-percent/100, so they can never exceed that share of traffic - a
+ * slow backend gets at most a few percent extra load, not double.
+ */
+@Slf4j
+@Component
+public class RequestHedger {
+
+    /** Hedges that may be spent in a burst after a quiet period. */
+    private static final double MAX_BUDGET = 10.0;
+
+    @Value("${llm.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${llm.hedging.tools:local_llm}")
+    private List<String> tools;
+
+    @Value("${llm.hedging.max-prompt-tokens:512}")
+    private int maxPromptTokens;
+
+    @Value("${llm.hedging.percentile:0.95}")
+    private double percentile;
+
+    @Value("${llm.hedging.initial-delay-ms:2000}")
+    private long initialDelayMs;
+
+    @Value("${llm.hedging.min-delay-ms:50}")
+    private long minDelayMs;
+
+    @Value("${llm.hedging.min-samples:20}")
+    private int minSamples;
+
+    @Value("${llm.hedging.window:256}")
+    private int window;
+
+    @Value("${llm.hedging.budget-percent:5}")
+    private double budgetPercent;
+
+    private final InferenceExecutor executor;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesDenied;
+    private final Map<String, LatencyWindow> firstTokenLatency = new ConcurrentHashMap<>();
+    private double budget;
+
+    public RequestHedger(InferenceExecutor executor, MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.hedgesSent = Counter.builder("llm.hedge").tag("result", "sent")
+            .description("Backup attempts started for slow generation calls").register(meterRegistry);
+        this.hedgesWon = Counter.builder("llm.hedge").tag("result", "won")
+            .description("Backup attempts that answered before the primary").register(meterRegistry);
+        this.hedgesDenied = Counter.builder("llm.hedge").tag("result", "over_budget")
+            .description("Hedges skipped because the hedge budget was spent").register(meterRegistry);
+    }
+
+    public boolean isEligible(String tool, int promptTokens) {
+        return enabled && tools.contains(tool != null ? tool : "") && promptTokens <= maxPromptTokens;
+    }
+
+    /**
+     * Current hedge delay for backend: the configured percentile of recent
+     * first-token latencies, or initial-delay-ms until enough have been seen.
+     */
+    public long delayMs(String backend) {
+        LatencyWindow latencies = firstTokenLatency.get(backend);
+        long delay = latencies != null ? latencies.percentile(percentile, minSamples) : -1;
+        return Math.max(minDelayMs, delay >= 0 ? delay : initialDelayMs);
+    }
+
+    /**
+     * Run primary, hedging with backup if it is slow to start. Each attempt
+     * receives a token consumer and returns the full text; tokens from the
+     * winning attempt are forwarded to onToken (which may be null).
+     */
+    public String execute(String backend, Function<Consumer<String>, String> primary,
+                          Function<Consumer<String>, String> backup, Consumer<String> onToken) {
+        deposit();
+        long delayMs = delayMs(backend);
+        Race race = new Race(onToken);
+        Leg primaryLeg = race.start(primary, backend);
+
+        try {
+            if (!race.events.tryAcquire(delayMs, TimeUnit.MILLISECONDS)) {
+                if (tryHedge()) {
+                    hedgesSent.increment();
+                    log.info("No first token from {} after {}ms, hedging", backend, delayMs);
+                    race.start(backup, null);
+                } else {
+                    hedgesDenied.increment();
+                }
+            }
+            while (race.winner.get() == null && !race.allDone()) {
+                race.events.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            race.legs.forEach(Leg::cancel);
+            throw new CancellationException("Interrupted while waiting for generation");
+        }
+
+        Leg winner = race.winner.get();
+        if (winner == null) {
+            // Every attempt ended before its completion callback could claim the win
+            winner = race.legs.stream().filter(leg -> !leg.result.isCompletedExceptionally())
+                .findFirst().orElse(primaryLeg);
+        }
+        for (Leg leg : race.legs) {
+            if (leg != winner) {
+                leg.cancel();
+            }
+        }
+        if (winner != primaryLeg) {
+            hedgesWon.increment();
+        }
+        return winner.join();
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(MAX_BUDGET, budget + budgetPercent / 100.0);
+    }
+
+    private synchronized boolean tryHedge() {
+        if (budget < 1.0) {
+            return false;
+        }
+        budget -= 1.0;
+        return true;
+    }
+
+    private void recordFirstToken(String backend, long elapsedMs) {
+        firstTokenLatency.computeIfAbsent(backend, b -> new LatencyWindow(window)).add(elapsedMs);
+    }
+
+    private final class Race {
+
+        private final Consumer<String> onToken;
+        private final AtomicReference<Leg> winner = new AtomicReference<>();
+        private final Semaphore events = new Semaphore(0);
+        private final List<Leg> legs = new ArrayList<>(2);
+
+        private Race(Consumer<String> onToken) {
+            this.onToken = onToken;
+        }
+
+        /**
+         * Start an attempt. Latency samples are taken for the primary only
+         * (sampledBackend), so the delay tracks the backend's undisturbed speed.
+         */
+        private Leg start(Function<Consumer<String>, String> attempt, String sampledBackend) {
+            Leg leg = new Leg(this, sampledBackend);
+            legs.add(leg);
+            leg.result = executor.submit(() -> leg.call.run(() -> attempt.apply(leg::onToken)));
+            leg.result.whenComplete((text, error) -> {
+                if (error == null) {
+                    winner.compareAndSet(null, leg); // Finished without emitting anything
+                }
+                events.release();
+            });
+            return leg;
+        }
+
+        private boolean allDone() {
+            return legs.stream().allMatch(leg -> leg.result.isDone());
+        }
+    }
+
+    private final class Leg {
+
+        private final Race race;
+        private final String sampledBackend;
+        private final CancellableCall call = new CancellableCall();
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile CompletableFuture<String> result;
+
+        private Leg(Race race, String sampledBackend) {
+            this.race = race;
+            this.sampledBackend = sampledBackend;
+        }
+
+        private void onToken(String chunk) {
+            if (started.compareAndSet(false, true)) {
+                sample();
+                race.winner.compareAndSet(null, this);
+                race.events.release();
+            }
+            if (race.winner.get() == this && race.onToken != null) {
+                race.onToken.accept(chunk);
+            }
+        }
+
+        private void cancel() {
+            if (!result.isDone()) {
+                // A cancelled primary still bounds its backend's latency from below
+                if (started.compareAndSet(false, true)) {
+                    sample();
+                }
+                call.cancel();
+            }
+        }
+
+        private void sample() {
+            if (sampledBackend != null) {
+                recordFirstToken(sampledBackend, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+        }
+
+        private String join() {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                call.cancel();
+                throw new CancellationException("Interrupted while waiting for generation");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new CompletionException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Ring buffer of the most recent first-token latencies for one backend.
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private int next;
+        private int count;
+
+        private LatencyWindow(int size) {
+            this.samples = new long[Math.max(1, size)];
+        }
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized long percentile(double p, int minSamples) {
+            if (count < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) Math.ceil(p * count) - 1)];
+        }
+    }
+}
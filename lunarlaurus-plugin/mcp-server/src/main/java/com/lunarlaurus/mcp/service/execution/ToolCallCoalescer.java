@@ -0,0 +1,146 @@
+package com.lunarlaurus.mcp.service.execution;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tool Call Coalescer
+ *
+ * Single-flight deduplication of identical in-flight tool calls. Concurrent
+ * calls with the same tool name and canonical arguments (JSON with sorted map
+ * keys) share one execution: the first caller runs it on its own thread and
+ * later callers wait for its result or error.
+ *
+ * Nothing is cached once the call finishes, so errors are never replayed to
+ * later requests. A waiter that is interrupted stops waiting without affecting
+ * the others; if the executing caller is interrupted, the waiters re-run the
+ * call instead of inheriting the cancellation.
+ */
+@Slf4j
+@Component
+public class ToolCallCoalescer {
+
+    @Value("${inference.coalescing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inference.coalescing.tools:local_llm,summarizer,summarize_text,code_analysis,analyze_code,translation,translate_text}")
+    private List<String> tools;
+
+    // Sampled generations are expected to differ between callers
+    @Value("${inference.coalescing.max-temperature:0.3}")
+    private double maxTemperature;
+
+    private final ObjectMapper canonicalMapper;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public ToolCallCoalescer(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("tool.calls.inflight", inFlight, ConcurrentHashMap::size)
+            .description("Distinct coalescable tool calls currently executing")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Run call, sharing its execution with identical concurrent calls. temperature
+     * is the sampling temperature for generation tools, or null when not applicable.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String tool, Object arguments, Double temperature, Callable<T> call) {
+        if (!enabled || !tools.contains(tool) || (temperature != null && temperature > maxTemperature)) {
+            return invoke(tool, call);
+        }
+
+        String key = key(tool, arguments);
+        while (true) {
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                return (T) lead(tool, key, flight, call);
+            }
+
+            meterRegistry.counter("tool.calls.coalesced", "tool", tool).increment();
+            log.debug("Coalescing {} call with an identical in-flight request", tool);
+            try {
+                return (T) existing.get();
+            } catch (CancellationException e) {
+                // The executing caller was cancelled; take over or join the next flight
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for " + tool);
+            } catch (ExecutionException e) {
+                throw rethrow(tool, e.getCause());
+            }
+        }
+    }
+
+    private Object lead(String tool, String key, CompletableFuture<Object> flight, Callable<?> call) {
+        try {
+            Object result = call.call();
+            inFlight.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (Throwable t) {
+            inFlight.remove(key, flight);
+            if (isCancellation(t)) {
+                flight.cancel(false);
+            } else {
+                flight.completeExceptionally(t);
+            }
+            throw rethrow(tool, t);
+        }
+    }
+
+    private static <T> T invoke(String tool, Callable<T> call) {
+        try {
+            return call.call();
+        } catch (Exception e) {
+            throw rethrow(tool, e);
+        }
+    }
+
+    private static boolean isCancellation(Throwable t) {
+        return Thread.currentThread().isInterrupted()
+            || t instanceof CancellationException
+            || t instanceof InterruptedException
+            || t.getCause() instanceof InterruptedException;
+    }
+
+    private static RuntimeException rethrow(String tool, Throwable t) {
+        if (t instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (t instanceof Error error) {
+            throw error;
+        }
+        return new RuntimeException(tool + " failed: " + t.getMessage(), t);
+    }
+
+    private String key(String tool, Object arguments) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(canonicalMapper.writeValueAsString(arguments).getBytes(StandardCharsets.UTF_8));
+            return tool + ':' + HexFormat.of().formatHex(hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot build coalescing key for " + tool, e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.lunarlaurus.mcp.service.execution;
+
+import com.lunarlaurus.mcp.model.CallToolResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Tool Call Metrics
+ *
+ * Times every tool call as tool.calls{tool, transport, outcome}, where
+ * transport is "http" (REST controller) or "mcp" (MCP stdio/SSE server) and
+ * outcome is success or error. A CallToolResponse flagged isError counts as
+ * an error even though no exception reached the caller. Error rate per tool
+ * is the error share of tool.calls_seconds_count.
+ */
+@Component
+public class ToolCallMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public ToolCallMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T record(String tool, String transport, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.get();
+            if (!(result instanceof CallToolResponse response && Boolean.TRUE.equals(response.getIsError()))) {
+                outcome = "success";
+            }
+            return result;
+        } finally {
+            Timer.builder("tool.calls").tag("tool", tool != null ? tool : "none").tag("transport", transport)
+                .tag("outcome", outcome)
+                .description("Tool calls end to end, including coalescing and admission waits")
+                .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
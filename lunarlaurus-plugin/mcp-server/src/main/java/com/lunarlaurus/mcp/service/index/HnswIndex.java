@@ -0,0 +1,470 @@
+package com.lunarlaurus.mcp.service.index;
+
+import com.lunarlaurus.mcp.service.storage.MappedVectorFile;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical Navigable Small World graph over cosine similarity.
+ *
+ * Vectors are L2-normalized on insert and stored contiguously in a memory-mapped
+ * {@link MappedVectorFile}; only the neighbor lists live on the heap. The graph is
+ * written to graph.bin on {@link #save()}; vectors appended after the last save
+ * are re-linked when the index is reopened, so a crash loses no data.
+ *
+ * Deletion is by tombstone: deleted nodes still route searches but never appear
+ * in results. Searches take a read lock, inserts a write lock.
+ */
+@Slf4j
+public class HnswIndex implements Closeable {
+
+    private static final int GRAPH_MAGIC = 0x484E5357; // "HNSW"
+    private static final int GRAPH_VERSION = 1;
+    private static final byte[] NO_KEY = new byte[0];
+
+    private final Path graphPath;
+    private final MappedVectorFile vectors;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Borrowed per layer search; at most one retained per concurrent search up to the capacity
+    private final BlockingQueue<VisitedSet> visitedPool =
+        new ArrayBlockingQueue<>(Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+
+    // links.get(node)[level] = [count, neighbor...]
+    private final List<int[][]> links = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private HnswIndex(Path directory, int dimension, long tag, int m, int efConstruction) {
+        this.graphPath = directory.resolve("graph.bin");
+        this.vectors = MappedVectorFile.open(directory.resolve("vectors.f32"), dimension, 0, tag);
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+
+        loadGraph();
+        if (links.size() < vectors.size()) {
+            log.info("Linking {} vectors added since the last graph save", vectors.size() - links.size());
+            for (int node = links.size(); node < vectors.size(); node++) {
+                link(node, vectors.readVector(node));
+            }
+        }
+    }
+
+    public static HnswIndex open(Path directory, int dimension, long tag, int m, int efConstruction) {
+        return new HnswIndex(directory, dimension, tag, m, efConstruction);
+    }
+
+    public int dimension() {
+        return vectors.dimension();
+    }
+
+    public int size() {
+        return links.size();
+    }
+
+    /**
+     * Add a vector and return its node id.
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            int node = vectors.append(NO_KEY, normalized);
+            link(node, normalized);
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The stored (normalized) vector of node, deleted or not.
+     */
+    public float[] vector(int node) {
+        return vectors.readVector(node);
+    }
+
+    public void delete(int node) {
+        lock.writeLock().lock();
+        try {
+            deleted.set(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return up to k live nodes most similar to query, best first.
+     */
+    public List<Neighbor> search(float[] query, int k, int ef) {
+        float[] q = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+
+            int ep = entryPoint;
+            float epScore = vectors.dot(ep, q);
+            for (int level = maxLevel; level > 0; level--) {
+                Neighbor best = greedy(q, ep, epScore, level);
+                ep = best.node();
+                epScore = best.score();
+            }
+
+            // Widen the beam so tombstoned nodes don't starve the result set
+            int beam = Math.max(ef, k) + Math.min(deleted.cardinality(), Math.max(ef, k));
+            List<Neighbor> candidates = searchLayer(q, ep, epScore, beam, 0);
+            List<Neighbor> results = new ArrayList<>(k);
+            for (Neighbor candidate : candidates) {
+                if (!deleted.get(candidate.node())) {
+                    results.add(candidate);
+                    if (results.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Persist the graph. Vectors are already on disk; this also forces them out.
+     */
+    public void save() {
+        lock.readLock().lock();
+        try {
+            vectors.flush();
+            Path tmp = graphPath.resolveSibling(graphPath.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(GRAPH_MAGIC);
+                out.writeInt(GRAPH_VERSION);
+                out.writeInt(m);
+                out.writeInt(links.size());
+                out.writeInt(entryPoint);
+                out.writeInt(maxLevel);
+                for (int[][] nodeLinks : links) {
+                    out.writeInt(nodeLinks.length);
+                    for (int[] levelLinks : nodeLinks) {
+                        int count = levelLinks[0];
+                        out.writeInt(count);
+                        for (int i = 1; i <= count; i++) {
+                            out.writeInt(levelLinks[i]);
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, graphPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot save HNSW graph to " + graphPath, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        vectors.close();
+    }
+
+    private void loadGraph() {
+        if (!Files.isRegularFile(graphPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphPath)))) {
+            if (in.readInt() != GRAPH_MAGIC || in.readInt() != GRAPH_VERSION || in.readInt() != m) {
+                log.info("HNSW graph {} has an incompatible format, rebuilding", graphPath);
+                return;
+            }
+            int nodes = in.readInt();
+            if (nodes > vectors.size()) {
+                log.warn("HNSW graph has {} nodes but only {} vectors exist, rebuilding", nodes, vectors.size());
+                return;
+            }
+            int savedEntryPoint = in.readInt();
+            int savedMaxLevel = in.readInt();
+            for (int node = 0; node < nodes; node++) {
+                int levels = in.readInt();
+                int[][] nodeLinks = new int[levels][];
+                for (int level = 0; level < levels; level++) {
+                    nodeLinks[level] = new int[1 + (level == 0 ? maxM0 : m)];
+                    int count = in.readInt();
+                    nodeLinks[level][0] = count;
+                    for (int i = 1; i <= count; i++) {
+                        nodeLinks[level][i] = in.readInt();
+                    }
+                }
+                links.add(nodeLinks);
+            }
+            entryPoint = savedEntryPoint;
+            maxLevel = savedMaxLevel;
+            log.info("Loaded HNSW graph with {} nodes", nodes);
+        } catch (IOException e) {
+            log.warn("Cannot read HNSW graph {} ({}), rebuilding", graphPath, e.getMessage());
+            links.clear();
+            entryPoint = -1;
+            maxLevel = -1;
+        }
+    }
+
+    private void link(int node, float[] q) {
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[1 + (l == 0 ? maxM0 : m)];
+        }
+        links.add(nodeLinks);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        float epScore = vectors.dot(ep, q);
+        for (int l = maxLevel; l > level; l--) {
+            Neighbor best = greedy(q, ep, epScore, l);
+            ep = best.node();
+            epScore = best.score();
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Neighbor> candidates = searchLayer(q, ep, epScore, efConstruction, l);
+            List<Neighbor> selected = selectNeighbors(candidates, m);
+            for (Neighbor neighbor : selected) {
+                append(nodeLinks[l], neighbor.node());
+                connect(neighbor.node(), node, neighbor.score(), l);
+            }
+            ep = candidates.get(0).node();
+            epScore = candidates.get(0).score();
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Add a back-link from target to node, pruning target's list if it is full.
+     */
+    private void connect(int target, int node, float score, int level) {
+        int[] targetLinks = links.get(target)[level];
+        int capacity = targetLinks.length - 1;
+        if (targetLinks[0] < capacity) {
+            append(targetLinks, node);
+            return;
+        }
+
+        float[] targetVector = vectors.readVector(target);
+        List<Neighbor> candidates = new ArrayList<>(capacity + 1);
+        candidates.add(new Neighbor(node, score));
+        for (int i = 1; i <= targetLinks[0]; i++) {
+            int existing = targetLinks[i];
+            candidates.add(new Neighbor(existing, vectors.dot(existing, targetVector)));
+        }
+        candidates.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+
+        List<Neighbor> kept = selectNeighbors(candidates, capacity);
+        targetLinks[0] = 0;
+        kept.forEach(n -> append(targetLinks, n.node()));
+    }
+
+    /**
+     * HNSW neighbor-selection heuristic: prefer candidates that are closer to the
+     * query than to any already selected neighbor, then top up with the closest rest.
+     * Candidates must be sorted best first.
+     */
+    private List<Neighbor> selectNeighbors(List<Neighbor> candidates, int limit) {
+        if (candidates.size() <= limit) {
+            return candidates;
+        }
+        List<Neighbor> selected = new ArrayList<>(limit);
+        List<float[]> selectedVectors = new ArrayList<>(limit);
+        List<Neighbor> discarded = new ArrayList<>();
+        for (Neighbor candidate : candidates) {
+            if (selected.size() == limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (float[] chosen : selectedVectors) {
+                if (vectors.dot(candidate.node(), chosen) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+                selectedVectors.add(vectors.readVector(candidate.node()));
+            } else {
+                discarded.add(candidate);
+            }
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < limit; i++) {
+            selected.add(discarded.get(i));
+        }
+        return selected;
+    }
+
+    private Neighbor greedy(float[] q, int ep, float epScore, int level) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[][] nodeLinks = links.get(ep);
+            if (level >= nodeLinks.length) {
+                break;
+            }
+            int[] levelLinks = nodeLinks[level];
+            for (int i = 1; i <= levelLinks[0]; i++) {
+                int candidate = levelLinks[i];
+                float score = vectors.dot(candidate, q);
+                if (score > epScore) {
+                    ep = candidate;
+                    epScore = score;
+                    changed = true;
+                }
+            }
+        }
+        return new Neighbor(ep, epScore);
+    }
+
+    /**
+     * Beam search within one layer. Returns up to ef nodes, best first.
+     */
+    private List<Neighbor> searchLayer(float[] q, int ep, float epScore, int ef, int level) {
+        VisitedSet seen = visitedPool.poll();
+        if (seen == null) {
+            seen = new VisitedSet();
+        }
+        try {
+            return searchLayer(q, ep, epScore, ef, level, seen);
+        } finally {
+            visitedPool.offer(seen);
+        }
+    }
+
+    private List<Neighbor> searchLayer(float[] q, int ep, float epScore, int ef, int level, VisitedSet seen) {
+        seen.reset(links.size());
+        seen.mark(ep);
+
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::score).reversed());
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::score));
+        Neighbor start = new Neighbor(ep, epScore);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Neighbor current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            int[][] nodeLinks = links.get(current.node());
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] levelLinks = nodeLinks[level];
+            for (int i = 1; i <= levelLinks[0]; i++) {
+                int candidate = levelLinks[i];
+                if (!seen.mark(candidate)) {
+                    continue;
+                }
+                float score = vectors.dot(candidate, q);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Neighbor neighbor = new Neighbor(candidate, score);
+                    candidates.add(neighbor);
+                    results.add(neighbor);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Neighbor> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+        return ordered;
+    }
+
+    private static void append(int[] levelLinks, int node) {
+        levelLinks[++levelLinks[0]] = node;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float scale = norm > 0 ? (float) (1.0 / Math.sqrt(norm)) : 0f;
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    /**
+     * A node and its cosine similarity to the query.
+     */
+    public record Neighbor(int node, float score) {
+    }
+
+    /**
+     * Generation-stamped visited marks, pooled and reused across searches to
+     * avoid a per-query allocation. Not tied to threads: with virtual threads
+     * every request runs on a new one.
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /** Returns true if the node was not yet visited. */
+        boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.lunarlaurus.mcp.service.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lunarlaurus.mcp.model.IndexedDocument;
+import com.lunarlaurus.mcp.model.SearchHit;
+import com.lunarlaurus.mcp.service.inference.EmbeddingBatcher;
+import com.lunarlaurus.mcp.service.storage.MappedVectorFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Vector Index Service
+ *
+ * Local semantic search over documents embedded with the configured embedding model:
+ * - Vectors: memory-mapped HNSW index (vectors.f32 + graph.bin)
+ * - Documents: append-only JSONL journal of upserts (documents.jsonl), last write wins
+ *
+ * Callers get ids, scores and snippets back, so large float arrays never have
+ * to pass through the LLM context. Like the embedding cache, the index is tied
+ * to embedding.model and is discarded when the model changes.
+ *
+ * Re-upserting a document tombstones its old vector, which keeps its space on
+ * disk and still routes searches. Once tombstones exceed
+ * vector-index.compact-ratio of all vectors, the graph and vector file are
+ * rebuilt from the live documents and the journal is rewritten to match.
+ * The new files are staged in compact/ while searches continue on the old
+ * index, then moved into place; a COMMIT marker written before the move lets
+ * startup finish an interrupted move, or discard an unfinished rebuild.
+ */
+@Slf4j
+@Service
+public class VectorIndexService {
+
+    @Value("${vector-index.directory:./data/vector-index}")
+    private String directory;
+
+    @Value("${vector-index.m:16}")
+    private int m;
+
+    @Value("${vector-index.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${vector-index.ef-search:64}")
+    private int efSearch;
+
+    @Value("${vector-index.snippet-chars:500}")
+    private int snippetChars;
+
+    @Value("${vector-index.save-every:1000}")
+    private int saveEvery;
+
+    @Value("${vector-index.compact-ratio:0.5}")
+    private double compactRatio;
+
+    @Value("${embedding.model:nomic-embed-text}")
+    private String embeddingModel;
+
+    private final EmbeddingBatcher embeddingBatcher;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, IndexedDocument> documents = new ConcurrentHashMap<>();
+    private final Map<Integer, IndexedDocument> documentsByNode = new ConcurrentHashMap<>();
+    // Searches hold the read lock so a compaction never swaps the index out from under them
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile HnswIndex index;
+    private BufferedWriter journal;
+    private int unsavedUpserts;
+    private boolean compactionFailed;
+
+    public VectorIndexService(EmbeddingBatcher embeddingBatcher, ObjectMapper objectMapper) {
+        this.embeddingBatcher = embeddingBatcher;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path dir = Path.of(directory);
+        finishCompaction(dir);
+        int dimension = MappedVectorFile.storedDimension(dir.resolve("vectors.f32"), modelTag());
+        if (dimension <= 0) {
+            // No index for the current model: start clean
+            Files.deleteIfExists(dir.resolve("graph.bin"));
+            Files.deleteIfExists(dir.resolve("documents.jsonl"));
+            log.info("Vector index is empty (model {})", embeddingModel);
+            return;
+        }
+
+        index = HnswIndex.open(dir, dimension, modelTag(), m, efConstruction);
+        replayJournal(dir.resolve("documents.jsonl"));
+        log.info("Vector index loaded: {} documents, {} vectors, dimension {}",
+            documents.size(), index.size(), dimension);
+        if (needsCompaction(index)) {
+            compact(index);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (index != null) {
+            index.save();
+            index.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Embed and index a document, replacing any earlier version with the same id.
+     */
+    public IndexedDocument upsert(String id, String text, Map<String, String> metadata) {
+        log.info("Upserting document {} (length: {})", id, text.length());
+        float[] embedding = embeddingBatcher.embed(text);
+
+        synchronized (this) {
+            HnswIndex idx = ensureIndex(embedding.length);
+            int node = idx.add(embedding);
+            IndexedDocument document = IndexedDocument.builder()
+                .id(id)
+                .node(node)
+                .snippet(text.length() > snippetChars ? text.substring(0, snippetChars) : text)
+                .metadata(metadata != null ? metadata : Map.of())
+                .build();
+
+            IndexedDocument previous = documents.put(id, document);
+            documentsByNode.put(node, document);
+            if (previous != null) {
+                idx.delete(previous.getNode());
+                documentsByNode.remove(previous.getNode());
+            }
+
+            appendJournal(document);
+            if (++unsavedUpserts >= saveEvery) {
+                idx.save();
+                unsavedUpserts = 0;
+            }
+            if (needsCompaction(idx)) {
+                compact(idx);
+                return documents.get(id); // Renumbered
+            }
+            return document;
+        }
+    }
+
+    /**
+     * Top-k documents by cosine similarity to the query text.
+     */
+    public List<SearchHit> search(String query, int topK) {
+        HnswIndex idx = index;
+        if (idx == null) {
+            return List.of();
+        }
+
+        float[] embedding = embeddingBatcher.embed(query);
+        swapLock.readLock().lock();
+        try {
+            idx = index;
+            long start = System.nanoTime();
+            List<HnswIndex.Neighbor> neighbors = idx.search(embedding, topK, efSearch);
+            log.debug("Vector search over {} vectors took {}µs", idx.size(), (System.nanoTime() - start) / 1000);
+
+            List<SearchHit> hits = new ArrayList<>(neighbors.size());
+            for (HnswIndex.Neighbor neighbor : neighbors) {
+                IndexedDocument document = documentsByNode.get(neighbor.node());
+                if (document != null) {
+                    hits.add(SearchHit.builder()
+                        .id(document.getId())
+                        .score(neighbor.score())
+                        .snippet(document.getSnippet())
+                        .metadata(document.getMetadata())
+                        .build());
+                }
+            }
+            return hits;
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    public int documentCount() {
+        return documents.size();
+    }
+
+    private HnswIndex ensureIndex(int dimension) {
+        if (index == null) {
+            log.info("Creating vector index (dimension {}, M {}, efConstruction {})", dimension, m, efConstruction);
+            index = HnswIndex.open(Path.of(directory), dimension, modelTag(), m, efConstruction);
+        } else if (index.dimension() != dimension) {
+            throw new IllegalStateException("Embedding dimension " + dimension
+                + " does not match vector index dimension " + index.dimension());
+        }
+        return index;
+    }
+
+    private void replayJournal(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    IndexedDocument document = objectMapper.readValue(line, IndexedDocument.class);
+                    if (document.getNode() < index.size()) {
+                        documents.put(document.getId(), document);
+                    }
+                }
+            }
+        }
+
+        // Every vector that isn't the latest version of some document is a tombstone
+        BitSet live = new BitSet(index.size());
+        for (IndexedDocument document : documents.values()) {
+            live.set(document.getNode());
+            documentsByNode.put(document.getNode(), document);
+        }
+        for (int node = live.nextClearBit(0); node < index.size(); node = live.nextClearBit(node + 1)) {
+            index.delete(node);
+        }
+    }
+
+    private boolean needsCompaction(HnswIndex idx) {
+        return compactRatio > 0 && !compactionFailed && idx.size() - documents.size() > compactRatio * idx.size();
+    }
+
+    /**
+     * Rebuild the index from the live documents' vectors into compact/, then
+     * swap it in. Until the COMMIT marker exists a failure leaves the old
+     * index in use; a failure while moving the files is finished on restart.
+     */
+    private void compact(HnswIndex old) {
+        Path dir = Path.of(directory);
+        Path staging = dir.resolve("compact");
+        long start = System.nanoTime();
+        int vectors = old.size();
+        Map<String, IndexedDocument> rebuilt = new HashMap<>();
+        try {
+            deleteStaging(staging);
+            HnswIndex fresh = HnswIndex.open(staging, old.dimension(), modelTag(), m, efConstruction);
+            try (BufferedWriter writer = Files.newBufferedWriter(staging.resolve("documents.jsonl"),
+                    StandardCharsets.UTF_8)) {
+                for (IndexedDocument document : documents.values()) {
+                    IndexedDocument moved = IndexedDocument.builder()
+                        .id(document.getId())
+                        .node(fresh.add(old.vector(document.getNode())))
+                        .snippet(document.getSnippet())
+                        .metadata(document.getMetadata())
+                        .build();
+                    rebuilt.put(moved.getId(), moved);
+                    writer.write(objectMapper.writeValueAsString(moved));
+                    writer.newLine();
+                }
+                fresh.save();
+            } finally {
+                fresh.close();
+            }
+            Files.createFile(staging.resolve("COMMIT"));
+        } catch (IOException | UncheckedIOException e) {
+            compactionFailed = true;
+            log.warn("Cannot compact vector index, not retrying until restart: {}", e.getMessage());
+            return;
+        }
+
+        swapLock.writeLock().lock();
+        try {
+            old.close();
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            finishCompaction(dir);
+            index = HnswIndex.open(dir, old.dimension(), modelTag(), m, efConstruction);
+            documents.putAll(rebuilt);
+            documentsByNode.clear();
+            rebuilt.values().forEach(document -> documentsByNode.put(document.getNode(), document));
+            unsavedUpserts = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot move the compacted vector index into place; "
+                + "it is finished on restart", e);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        log.info("Compacted vector index from {} to {} vectors in {}ms", vectors, rebuilt.size(),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Move a committed compaction's files into place, redoing whatever an
+     * interrupted move left in compact/; an uncommitted one is discarded.
+     */
+    private static void finishCompaction(Path dir) throws IOException {
+        Path staging = dir.resolve("compact");
+        if (Files.exists(staging.resolve("COMMIT"))) {
+            for (String name : List.of("vectors.f32", "graph.bin", "documents.jsonl")) {
+                if (Files.exists(staging.resolve(name))) {
+                    Files.move(staging.resolve(name), dir.resolve(name),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+        }
+        deleteStaging(staging);
+    }
+
+    private static void deleteStaging(Path staging) throws IOException {
+        if (!Files.isDirectory(staging)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(staging)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(staging);
+    }
+
+    private void appendJournal(IndexedDocument document) {
+        try {
+            if (journal == null) {
+                journal = Files.newBufferedWriter(Path.of(directory).resolve("documents.jsonl"),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            journal.write(objectMapper.writeValueAsString(document));
+            journal.newLine();
+            journal.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write vector index journal", e);
+        }
+    }
+
+    private long modelTag() {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                .digest(embeddingModel.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.lunarlaurus.mcp.service.inference;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * Immutable headers shared by every backend request, so the hot path
+ * doesn't rebuild the same header map per call. Bodies are pre-serialized
+ * to byte[] so requests carry a Content-Length instead of chunked encoding.
+ */
+final class BackendHeaders {
+
+    static final HttpHeaders JSON;
+
+    static {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        JSON = HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+    private BackendHeaders() {
+    }
+}
@@ -1,41 +1,223 @@
 package com.lunarlaurus.mcp.service.inference;
 
-import lombok.RequiredArgsConstructor;
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import com.lunarlaurus.mcp.model.SourceFile;
+import com.lunarlaurus.mcp.service.cache.AnalysisCache;
+import com.lunarlaurus.mcp.service.execution.InferenceExecutor;
+import com.lunarlaurus.mcp.service.routing.BackendRouter;
+import com.lunarlaurus.mcp.service.tokenizer.TokenCounter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
 /**
  * Code Analysis Service
- * 
- * Analyzes code for patterns, potential issues, and suggestions
+ *
+ * Analyzes code for patterns, potential issues, and suggestions.
+ *
+ * Batch mode takes several files (inline or read from code-analysis.root),
+ * splits large ones at class/method boundaries into units of at most
+ * code-analysis.unit-tokens, analyzes the units concurrently and merges the
+ * findings per file. Backend limits are enforced by admission control, so
+ * code-analysis.concurrency only caps how many units are queued at once.
+ * Unit results are cached by content hash (AnalysisCache): after a small
+ * edit only the changed units go back to the model.
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class CodeAnalysisService {
 
+    private static final int MAX_OUTPUT_TOKENS = 1000;
+    private static final int MIN_UNIT_OUTPUT_TOKENS = 256;
+    private static final String BATCH_TOOL = "analyze_code_batch";
+
+    private static final Map<String, String> LANGUAGES_BY_EXTENSION = Map.ofEntries(
+        Map.entry("java", "java"), Map.entry("kt", "kotlin"), Map.entry("scala", "scala"),
+        Map.entry("py", "python"), Map.entry("js", "javascript"), Map.entry("jsx", "javascript"),
+        Map.entry("ts", "typescript"), Map.entry("tsx", "typescript"), Map.entry("go", "go"),
+        Map.entry("rs", "rust"), Map.entry("c", "c"), Map.entry("h", "c"), Map.entry("cpp", "cpp"),
+        Map.entry("cc", "cpp"), Map.entry("hpp", "cpp"), Map.entry("cs", "csharp"),
+        Map.entry("swift", "swift"), Map.entry("php", "php"));
+
+    @Value("${code-analysis.unit-tokens:1500}")
+    private int unitTokens;
+
+    @Value("${code-analysis.concurrency:8}")
+    private int concurrency;
+
+    @Value("${code-analysis.root:.}")
+    private String root;
+
+    @Value("${code-analysis.max-file-bytes:1048576}")
+    private long maxFileBytes;
+
     private final LocalLLMService localLLMService;
+    private final TokenCounter tokenCounter;
+    private final InferenceExecutor inferenceExecutor;
+    private final AnalysisCache analysisCache;
+    private final CodeSplitter splitter;
+
+    public CodeAnalysisService(LocalLLMService localLLMService, TokenCounter tokenCounter,
+                               InferenceExecutor inferenceExecutor, AnalysisCache analysisCache) {
+        this.localLLMService = localLLMService;
+        this.tokenCounter = tokenCounter;
+        this.inferenceExecutor = inferenceExecutor;
+        this.analysisCache = analysisCache;
+        this.splitter = new CodeSplitter(tokenCounter::count);
+    }
 
     public String analyze(String code, String language) {
         log.info("Analyzing code (language: {})", language);
 
-        String prompt = String.format(
+        if (tokenCounter.count(code) > unitTokens) {
+            return analyzeBatch(List.of(new SourceFile("input", code)), language, null);
+        }
+
+        return localLLMService.generate(GenerationRequest.builder()
+            .prompt(prompt(code, language, null))
+            .maxTokens(MAX_OUTPUT_TOKENS)
+            .temperature(0.2)
+            .backend(BackendRouter.AUTO)
+            .tool("analyze_code")
+            .build());
+    }
+
+    /**
+     * Analyze several files as one changeset, reporting each finished unit to
+     * onProgress (may be null). language "auto" detects it per file extension.
+     */
+    public String analyzeBatch(List<SourceFile> files, String language, Consumer<String> onProgress) {
+        List<WorkItem> work = new ArrayList<>();
+        for (int f = 0; f < files.size(); f++) {
+            SourceFile file = files.get(f);
+            String code = file.getContent() != null ? file.getContent() : read(file.getPath());
+            String lang = "auto".equals(language) ? detectLanguage(file.getPath()) : language;
+            for (CodeSplitter.Unit unit : splitter.split(code, lang, unitTokens)) {
+                work.add(new WorkItem(f, lang, unit));
+            }
+        }
+        log.info("Analyzing {} files as {} units", files.size(), work.size());
+
+        AtomicInteger done = new AtomicInteger();
+        // Not synchronized: onProgress does client I/O, which would pin a virtual thread
+        Lock progressLock = new ReentrantLock();
+        AtomicInteger cached = new AtomicInteger();
+        List<String> analyses = inferenceExecutor.mapBounded(work, concurrency, item -> {
+            String analysis = analysisCache.get(item.language(), item.unit().text());
+            if (analysis != null) {
+                cached.incrementAndGet();
+            } else {
+                analysis = analyzeUnit(files.get(item.file()).getPath(), item);
+                analysisCache.put(item.language(), item.unit().text(), analysis);
+            }
+            String message = String.format("Analyzed %s: %s (%d/%d)", files.get(item.file()).getPath(),
+                item.unit().name(), done.incrementAndGet(), work.size());
+            log.debug(message);
+            if (onProgress != null) {
+                progressLock.lock();
+                try {
+                    onProgress.accept(message);
+                } finally {
+                    progressLock.unlock();
+                }
+            }
+            return analysis;
+        });
+
+        return merge(files, work, analyses, cached.get());
+    }
+
+    private String analyzeUnit(String path, WorkItem item) {
+        CodeSplitter.Unit unit = item.unit();
+        String location = String.format("%s, lines %d-%d (%s)", path, unit.startLine(), unit.endLine(), unit.name());
+        int outputTokens = Math.max(MIN_UNIT_OUTPUT_TOKENS, Math.min(MAX_OUTPUT_TOKENS, tokenCounter.count(unit.text()) / 2));
+        return localLLMService.generate(GenerationRequest.builder()
+            .prompt(prompt(unit.text(), item.language(), location))
+            .maxTokens(outputTokens)
+            .temperature(0.2)
+            .backend(BackendRouter.AUTO)
+            .tool(BATCH_TOOL)
+            .build());
+    }
+
+    // Everything before the code is fixed per language, so backends can reuse its cached prefix
+    private static String prompt(String code, String language, String location) {
+        String lang = language.equals("auto") ? "" : language;
+        return String.format(
             "[INST] Analyze the following %s code. Identify:\n" +
             "1. Potential bugs or issues\n" +
             "2. Performance considerations\n" +
             "3. Code quality and best practices\n" +
             "4. Security concerns (if any)\n\n" +
-            "Code:\n```%s\n%s\n```\n\n" +
+            "Code%s:\n```%s\n%s\n```\n\n" +
             "Provide a concise analysis: [/INST]",
-            language.equals("auto") ? "" : language,
-            language.equals("auto") ? "" : language,
-            code
-        );
+            lang, location != null ? " from " + location : "", lang, code);
+    }
+
+    /**
+     * Findings grouped per file in input order; units of split files are
+     * headed by their declaration and line range.
+     */
+    private static String merge(List<SourceFile> files, List<WorkItem> work, List<String> analyses, int cached) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Analyzed %d files (%d units, %d unchanged from cache)%n",
+            files.size(), work.size(), cached));
+        for (int f = 0; f < files.size(); f++) {
+            report.append("\n## ").append(files.get(f).getPath()).append('\n');
+            List<Integer> units = new ArrayList<>();
+            for (int i = 0; i < work.size(); i++) {
+                if (work.get(i).file() == f) {
+                    units.add(i);
+                }
+            }
+            for (int i : units) {
+                CodeSplitter.Unit unit = work.get(i).unit();
+                if (units.size() > 1) {
+                    report.append(String.format("%n### %s (lines %d-%d)%n", unit.name(), unit.startLine(), unit.endLine()));
+                }
+                report.append(analyses.get(i).strip()).append('\n');
+            }
+        }
+        return report.toString();
+    }
 
-        // Use GPU for faster analysis of shorter code snippets
-        int estimatedTokens = code.length() / 4;
-        String backend = estimatedTokens < 2000 ? "gpu" : "cpu";
+    private String read(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Each file needs content or a path");
+        }
+        Path base = Path.of(root).toAbsolutePath().normalize();
+        Path file = base.resolve(path).normalize();
+        if (!file.startsWith(base)) {
+            throw new IllegalArgumentException("Path is outside code-analysis.root: " + path);
+        }
+        try {
+            if (Files.size(file) > maxFileBytes) {
+                throw new IllegalArgumentException("File exceeds code-analysis.max-file-bytes: " + path);
+            }
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + path, e);
+        }
+    }
+
+    private static String detectLanguage(String path) {
+        int dot = path != null ? path.lastIndexOf('.') : -1;
+        return dot >= 0 ? LANGUAGES_BY_EXTENSION.getOrDefault(path.substring(dot + 1).toLowerCase(), "auto") : "auto";
+    }
 
-        return localLLMService.generate(prompt, 1000, 0.2, backend);
+    private record WorkItem(int file, String language, CodeSplitter.Unit unit) {
     }
 }
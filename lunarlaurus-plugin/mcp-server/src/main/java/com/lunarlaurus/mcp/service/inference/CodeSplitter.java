@@ -0,0 +1,275 @@
+package com.lunarlaurus.mcp.service.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Code Splitter
+ *
+ * Splits a source file into analysis units of at most a token budget, cutting
+ * at top-level declarations first and descending into oversized ones (a class
+ * into its methods). Brace languages are split by brace depth, skipping
+ * braces inside strings and comments; Python by indentation. Small adjacent
+ * declarations are packed into one unit, and anything that still doesn't fit
+ * is cut into line windows.
+ */
+final class CodeSplitter {
+
+    record Unit(String name, int startLine, int endLine, String text) {
+    }
+
+    private static final Pattern PY_DECLARATION = Pattern.compile("^\\s*(@|def\\s|class\\s|async\\s+def\\s)");
+    private static final Pattern IMPORT = Pattern.compile("^(package|import|from|using|use|#include)\\b");
+    private static final int MAX_NAME_CHARS = 80;
+
+    private final ToIntFunction<String> tokens;
+
+    CodeSplitter(ToIntFunction<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    List<Unit> split(String code, String language, int budget) {
+        String[] lines = code.split("\n", -1);
+        List<Unit> units = new ArrayList<>();
+        if (tokens.applyAsInt(code) <= budget) {
+            units.add(unit(lines, 0, lines.length, null));
+            return units;
+        }
+        int[] depth = "python".equals(language) ? null : braceDepths(lines);
+        splitRange(lines, depth, 0, lines.length, budget, null, units);
+        return units;
+    }
+
+    private void splitRange(String[] lines, int[] depth, int from, int to, int budget, String context,
+                            List<Unit> units) {
+        List<int[]> ranges = ranges(lines, depth, from, to);
+        int packStart = -1;
+        int packEnd = -1;
+        int packTokens = 0;
+        for (int[] range : ranges) {
+            int rangeTokens = tokens.applyAsInt(text(lines, range[0], range[1]));
+            if (rangeTokens > budget) {
+                if (packStart >= 0) {
+                    units.add(unit(lines, packStart, packEnd, context));
+                    packStart = -1;
+                }
+                // Descend only where the body has declarations to cut between
+                int[] interior = depth != null ? braceInterior(depth, range) : indentInterior(lines, range);
+                if (interior != null && ranges(lines, depth, interior[0], interior[1]).size() > 1) {
+                    String name = context != null ? context + " > " + name(lines, range[0]) : name(lines, range[0]);
+                    splitRange(lines, depth, interior[0], interior[1], budget, name, units);
+                } else {
+                    windows(lines, range, budget, context, units);
+                }
+            } else if (packStart >= 0 && packTokens + rangeTokens <= budget) {
+                packEnd = range[1];
+                packTokens += rangeTokens;
+            } else {
+                if (packStart >= 0) {
+                    units.add(unit(lines, packStart, packEnd, context));
+                }
+                packStart = range[0];
+                packEnd = range[1];
+                packTokens = rangeTokens;
+            }
+        }
+        if (packStart >= 0) {
+            units.add(unit(lines, packStart, packEnd, context));
+        }
+    }
+
+    private static List<int[]> ranges(String[] lines, int[] depth, int from, int to) {
+        return depth != null ? braceRanges(depth, from, to) : indentRanges(lines, from, to);
+    }
+
+    /**
+     * Line ranges each ending where a block closes back to the depth of from.
+     * Lines between blocks (imports, fields, annotations) lead the next block.
+     */
+    private static List<int[]> braceRanges(int[] depth, int from, int to) {
+        List<int[]> ranges = new ArrayList<>();
+        int base = depth[from];
+        int start = from;
+        boolean opened = false;
+        for (int i = from; i < to; i++) {
+            if (depth[i + 1] > base) {
+                opened = true;
+            }
+            if (opened && depth[i + 1] <= base) {
+                ranges.add(new int[] {start, i + 1});
+                start = i + 1;
+                opened = false;
+            }
+        }
+        if (start < to) {
+            if (ranges.isEmpty()) {
+                ranges.add(new int[] {start, to});
+            } else {
+                ranges.get(ranges.size() - 1)[1] = to;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * The lines between a block's opening and closing brace, or null if the
+     * range holds no block to descend into.
+     */
+    private static int[] braceInterior(int[] depth, int[] range) {
+        int base = depth[range[0]];
+        int open = -1;
+        int close = -1;
+        for (int i = range[0]; i < range[1]; i++) {
+            if (open < 0 && depth[i + 1] > base) {
+                open = i;
+            }
+            if (open >= 0 && depth[i] > base && depth[i + 1] <= base) {
+                close = i;
+            }
+        }
+        return open >= 0 && close > open + 1 ? new int[] {open + 1, close} : null;
+    }
+
+    private static List<int[]> indentRanges(String[] lines, int from, int to) {
+        int indent = Integer.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            if (!isBlankOrComment(lines[i])) {
+                indent = Math.min(indent, indentation(lines[i]));
+            }
+        }
+        List<int[]> ranges = new ArrayList<>();
+        int start = from;
+        boolean afterDecorator = false;
+        for (int i = from; i < to; i++) {
+            if (isBlankOrComment(lines[i]) || indentation(lines[i]) != indent) {
+                continue;
+            }
+            boolean declaration = PY_DECLARATION.matcher(lines[i]).find();
+            if (declaration && !afterDecorator && i > start) {
+                ranges.add(new int[] {start, i});
+                start = i;
+            }
+            afterDecorator = lines[i].strip().startsWith("@");
+        }
+        ranges.add(new int[] {start, to});
+        return ranges;
+    }
+
+    private static int[] indentInterior(String[] lines, int[] range) {
+        for (int i = range[0]; i < range[1]; i++) {
+            String line = lines[i].strip();
+            if (!line.startsWith("@") && line.endsWith(":")) {
+                return i + 1 < range[1] ? new int[] {i + 1, range[1]} : null;
+            }
+        }
+        return null;
+    }
+
+    private void windows(String[] lines, int[] range, int budget, String context, List<Unit> units) {
+        int start = range[0];
+        int windowTokens = 0;
+        for (int i = range[0]; i < range[1]; i++) {
+            int lineTokens = tokens.applyAsInt(lines[i]) + 1;
+            if (i > start && windowTokens + lineTokens > budget) {
+                units.add(unit(lines, start, i, context));
+                start = i;
+                windowTokens = 0;
+            }
+            windowTokens += lineTokens;
+        }
+        if (start < range[1]) {
+            units.add(unit(lines, start, range[1], context));
+        }
+    }
+
+    /**
+     * Brace depth at the start of each line (one extra entry for the end).
+     */
+    private static int[] braceDepths(String[] lines) {
+        int[] depth = new int[lines.length + 1];
+        int current = 0;
+        boolean blockComment = false;
+        for (int l = 0; l < lines.length; l++) {
+            depth[l] = current;
+            String line = lines[l];
+            char quote = 0;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                char next = i + 1 < line.length() ? line.charAt(i + 1) : 0;
+                if (blockComment) {
+                    if (c == '*' && next == '/') {
+                        blockComment = false;
+                        i++;
+                    }
+                } else if (quote != 0) {
+                    if (c == '\\') {
+                        i++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '/' && next == '/') {
+                    break;
+                } else if (c == '/' && next == '*') {
+                    blockComment = true;
+                    i++;
+                } else if (c == '"' || c == '`' || (c == '\'' && isCharLiteral(line, i))) {
+                    quote = c;
+                } else if (c == '{') {
+                    current++;
+                } else if (c == '}') {
+                    current = Math.max(0, current - 1);
+                }
+            }
+        }
+        depth[lines.length] = current;
+        return depth;
+    }
+
+    // 'x' or '\x', so Rust lifetimes and apostrophes in prose don't open a literal
+    private static boolean isCharLiteral(String line, int i) {
+        return (i + 2 < line.length() && line.charAt(i + 2) == '\'')
+            || (i + 3 < line.length() && line.charAt(i + 1) == '\\' && line.charAt(i + 3) == '\'');
+    }
+
+    private static boolean isBlankOrComment(String line) {
+        String stripped = line.strip();
+        return stripped.isEmpty() || stripped.startsWith("#");
+    }
+
+    private static int indentation(String line) {
+        int n = 0;
+        while (n < line.length() && (line.charAt(n) == ' ' || line.charAt(n) == '\t')) {
+            n++;
+        }
+        return n;
+    }
+
+    private static Unit unit(String[] lines, int from, int to, String context) {
+        String name = name(lines, from);
+        return new Unit(context != null ? context + " > " + name : name, from + 1, to, text(lines, from, to));
+    }
+
+    /**
+     * The first line that reads like a declaration: not blank, an annotation,
+     * a comment or an import.
+     */
+    private static String name(String[] lines, int from) {
+        for (int i = from; i < lines.length; i++) {
+            String line = lines[i].strip();
+            if (line.isEmpty() || line.startsWith("@") || line.startsWith("//") || line.startsWith("/*")
+                    || line.startsWith("*") || line.startsWith("#") || IMPORT.matcher(line).find()) {
+                continue;
+            }
+            line = line.endsWith("{") ? line.substring(0, line.length() - 1).strip() : line;
+            return line.length() > MAX_NAME_CHARS ? line.substring(0, MAX_NAME_CHARS) + "..." : line;
+        }
+        return "line " + (from + 1);
+    }
+
+    private static String text(String[] lines, int from, int to) {
+        return String.join("\n", Arrays.asList(lines).subList(from, to));
+    }
+}
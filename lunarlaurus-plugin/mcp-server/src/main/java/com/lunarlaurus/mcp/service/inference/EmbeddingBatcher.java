@@ -0,0 +1,162 @@
+package com.lunarlaurus.mcp.service.inference;
+
+import com.lunarlaurus.mcp.service.execution.InferenceExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding Batcher
+ *
+ * Collapses concurrent single-text embedding requests into backend batches.
+ * Each request waits at most embedding.micro-batch.max-wait-ms for company;
+ * a batch is dispatched as soon as it reaches max-batch-size or the oldest
+ * request's wait expires, and results are split back to the waiting callers.
+ */
+@Slf4j
+@Service
+public class EmbeddingBatcher {
+
+    @Value("${embedding.micro-batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${embedding.micro-batch.max-batch-size:32}")
+    private int maxBatchSize;
+
+    @Value("${embedding.micro-batch.max-wait-ms:5}")
+    private long maxWaitMs;
+
+    private final EmbeddingService embeddingService;
+    private final InferenceExecutor inferenceExecutor;
+    private final BlockingQueue<PendingEmbedding> queue = new LinkedBlockingQueue<>();
+
+    private final DistributionSummary fillRatio;
+    private final Timer queueDelay;
+    private final Counter batches;
+
+    private volatile Thread dispatcher;
+
+    public EmbeddingBatcher(EmbeddingService embeddingService, InferenceExecutor inferenceExecutor,
+                            MeterRegistry meterRegistry) {
+        this.embeddingService = embeddingService;
+        this.inferenceExecutor = inferenceExecutor;
+        this.fillRatio = DistributionSummary.builder("embedding.microbatch.fill.ratio")
+            .description("Dispatched batch size as a fraction of max batch size")
+            .register(meterRegistry);
+        this.queueDelay = Timer.builder("embedding.microbatch.queue.delay")
+            .description("Time a request waited in the micro-batch queue before dispatch")
+            .register(meterRegistry);
+        this.batches = Counter.builder("embedding.microbatch.batches")
+            .description("Micro-batches dispatched to the embedding backend")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Embedding micro-batching disabled");
+            return;
+        }
+        dispatcher = new Thread(this::dispatchLoop, "embedding-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("Embedding micro-batching enabled (max batch {}, max wait {}ms)", maxBatchSize, maxWaitMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+    }
+
+    /**
+     * Embed a single text, sharing a backend call with concurrent requests.
+     */
+    public float[] embed(String text) {
+        if (dispatcher == null) {
+            return embeddingService.generateEmbedding(text);
+        }
+
+        PendingEmbedding pending = new PendingEmbedding(text, new CompletableFuture<>(), System.nanoTime());
+        queue.add(pending);
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void dispatchLoop() {
+        List<PendingEmbedding> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                PendingEmbedding first = queue.take();
+                batch.add(first);
+
+                long deadline = first.enqueuedNanos() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingEmbedding next = remaining > 0
+                        ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                        : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                dispatch(List.copyOf(batch));
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        IllegalStateException shutdown = new IllegalStateException("Embedding batcher stopped");
+        batch.forEach(p -> p.result().completeExceptionally(shutdown));
+        queue.forEach(p -> p.result().completeExceptionally(shutdown));
+    }
+
+    private void dispatch(List<PendingEmbedding> batch) {
+        long now = System.nanoTime();
+        batch.forEach(p -> queueDelay.record(now - p.enqueuedNanos(), TimeUnit.NANOSECONDS));
+        fillRatio.record((double) batch.size() / maxBatchSize);
+        batches.increment();
+        log.debug("Dispatching embedding micro-batch of {}", batch.size());
+
+        inferenceExecutor.submit(() -> {
+            List<String> texts = batch.stream().map(PendingEmbedding::text).toList();
+            return embeddingService.generateBatchEmbeddings(texts);
+        }).whenComplete((embeddings, error) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                if (error != null) {
+                    batch.get(i).result().completeExceptionally(
+                        error instanceof CompletionException ? error.getCause() : error);
+                } else {
+                    batch.get(i).result().complete(embeddings.get(i));
+                }
+            }
+        });
+    }
+
+    private record PendingEmbedding(String text, CompletableFuture<float[]> result, long enqueuedNanos) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.lunarlaurus.mcp.service.inference;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Embedding Encoding
+ *
+ * Output formats for returning vectors to tool callers:
+ * - text:   decimal list, e.g. [0.1, -0.2, ...] (largest, human readable)
+ * - base64: little-endian float32, base64 encoded (lossless, ~5.3 chars/dim)
+ * - int8:   symmetric int8 quantization, base64 encoded; value ≈ byte * scale (~1.3 chars/dim)
+ */
+public enum EmbeddingEncoding {
+    TEXT,
+    BASE64,
+    INT8;
+
+    public static EmbeddingEncoding parse(String format) {
+        if (format == null || format.isBlank()) {
+            return TEXT;
+        }
+        try {
+            return valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown embedding format: " + format + " (use text, base64 or int8)");
+        }
+    }
+
+    /**
+     * Encode a vector, prefixed with enough description for the caller to decode it.
+     */
+    public String encode(float[] vector) {
+        switch (this) {
+            case BASE64: {
+                ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.asFloatBuffer().put(vector);
+                return "float32-le base64: " + Base64.getEncoder().encodeToString(buffer.array());
+            }
+            case INT8: {
+                float maxAbs = 0f;
+                for (float v : vector) {
+                    maxAbs = Math.max(maxAbs, Math.abs(v));
+                }
+                float scale = maxAbs > 0 ? maxAbs / 127f : 1f;
+                byte[] quantized = new byte[vector.length];
+                for (int i = 0; i < vector.length; i++) {
+                    quantized[i] = (byte) Math.round(vector[i] / scale);
+                }
+                return "int8 base64 (scale=" + scale + "): " + Base64.getEncoder().encodeToString(quantized);
+            }
+            default:
+                return Arrays.toString(vector);
+        }
+    }
+}
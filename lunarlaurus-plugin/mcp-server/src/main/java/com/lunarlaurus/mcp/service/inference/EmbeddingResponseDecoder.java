@@ -0,0 +1,113 @@
+package com.lunarlaurus.mcp.service.inference;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Embedding Response Decoder
+ *
+ * Token-level decoder for embedding API responses. Numbers are read straight
+ * from the Jackson parser into a reusable primitive buffer, so a response of N
+ * dimensions costs one exactly-sized float[] instead of a Map, a List and N
+ * boxed Doubles.
+ *
+ * Handles both Ollama shapes:
+ * - /api/embeddings → {"embedding": [..]}
+ * - /api/embed      → {"embeddings": [[..], [..]]}
+ */
+public final class EmbeddingResponseDecoder {
+
+    private static final ThreadLocal<float[]> SCRATCH = ThreadLocal.withInitial(() -> new float[1024]);
+
+    private final JsonFactory jsonFactory;
+
+    public EmbeddingResponseDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Decode a single-embedding response ({"embedding": [...]}).
+     */
+    public float[] decodeSingle(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            expectObjectStart(parser);
+            float[] embedding = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("embedding".equals(field) && value == JsonToken.START_ARRAY) {
+                    embedding = readVector(parser);
+                } else if ("error".equals(field) && value == JsonToken.VALUE_STRING) {
+                    throw new IOException("Backend error: " + parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (embedding == null) {
+                throw new IOException("Response has no \"embedding\" field");
+            }
+            return embedding;
+        }
+    }
+
+    /**
+     * Decode a multi-input response ({"embeddings": [[...], ...]}).
+     */
+    public List<float[]> decodeBatch(InputStream body, int expected) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            expectObjectStart(parser);
+            List<float[]> embeddings = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("embeddings".equals(field) && value == JsonToken.START_ARRAY) {
+                    embeddings = new ArrayList<>(expected);
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        embeddings.add(readVector(parser));
+                    }
+                } else if ("error".equals(field) && value == JsonToken.VALUE_STRING) {
+                    throw new IOException("Backend error: " + parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (embeddings == null) {
+                throw new IOException("Response has no \"embeddings\" field");
+            }
+            return embeddings;
+        }
+    }
+
+    /**
+     * Read the numbers of the array the parser is positioned at (START_ARRAY consumed).
+     */
+    private static float[] readVector(JsonParser parser) throws IOException {
+        float[] scratch = SCRATCH.get();
+        int size = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+                throw new IOException("Unexpected token in embedding: " + token);
+            }
+            if (size == scratch.length) {
+                scratch = Arrays.copyOf(scratch, size * 2);
+                SCRATCH.set(scratch);
+            }
+            scratch[size++] = parser.getFloatValue();
+        }
+        return Arrays.copyOf(scratch, size);
+    }
+
+    private static void expectObjectStart(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object from embedding backend");
+        }
+    }
+}
@@ -1,73 +1,195 @@
 package com.lunarlaurus.mcp.service.inference;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lunarlaurus.mcp.service.cache.EmbeddingCache;
+import com.lunarlaurus.mcp.service.execution.InferenceExecutor;
+import com.lunarlaurus.mcp.service.pool.BackendPools;
+import com.lunarlaurus.mcp.service.pool.EndpointPool;
+import com.lunarlaurus.mcp.service.residency.ModelResidency;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Embedding Service
  * 
  * Generates embeddings using local embedding models (e.g., all-MiniLM-L6-v2)
  * Supports both single and batch embedding generation
+ *
+ * Batches go to the backend's multi-input endpoint (Ollama /api/embed with an
+ * "input" array) in chunks of embedding.batch.size. Backends without batch
+ * support fall back to a bounded concurrent fan-out of single requests.
+ *
+ * Responses are decoded token by token straight into float[] (see
+ * EmbeddingResponseDecoder) rather than through Map/List<Double>.
+ *
+ * Every path checks the EmbeddingCache first, so unchanged texts are only
+ * sent to the backend once per embedding model. Single and batch requests
+ * are balanced across the embedding / embedding-batch endpoint pools, and
+ * carry embedding.keep-alive so ModelResidency can keep the model loaded.
  */
 @Slf4j
 @Service
 public class EmbeddingService {
 
-    @Value("${embedding.endpoint:http://localhost:11434/api/embeddings}")
-    private String embeddingEndpoint;
-
     @Value("${embedding.model:nomic-embed-text}")
     private String embeddingModel;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${embedding.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${embedding.batch.size:64}")
+    private int batchSize;
+
+    @Value("${embedding.batch.concurrency:2}")
+    private int batchConcurrency;
+
+    @Value("${embedding.batch.fallback-concurrency:8}")
+    private int fallbackConcurrency;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final EmbeddingResponseDecoder decoder;
+    private final InferenceExecutor inferenceExecutor;
+    private final EmbeddingCache embeddingCache;
+    private final EndpointPool singlePool;
+    private final EndpointPool batchPool;
+    private final ModelResidency modelResidency;
+
+    // Flipped off the first time the backend rejects the batch endpoint
+    private volatile boolean batchSupported = true;
+
+    public EmbeddingService(@Qualifier("embeddingRestTemplate") RestTemplate restTemplate, ObjectMapper objectMapper,
+                            InferenceExecutor inferenceExecutor, EmbeddingCache embeddingCache,
+                            BackendPools backendPools, ModelResidency modelResidency) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.decoder = new EmbeddingResponseDecoder(objectMapper.getFactory());
+        this.inferenceExecutor = inferenceExecutor;
+        this.embeddingCache = embeddingCache;
+        this.singlePool = backendPools.get("embedding");
+        this.batchPool = backendPools.get("embedding-batch");
+        this.modelResidency = modelResidency;
+    }
 
     public float[] generateEmbedding(String text) {
+        float[] cached = embeddingCache.get(text);
+        if (cached != null) {
+            return cached;
+        }
+
+        float[] embedding = requestEmbedding(text);
+        embeddingCache.put(text, embedding);
+        return embedding;
+    }
+
+    private float[] requestEmbedding(String text) {
         try {
             log.info("Generating embedding for text (length: {})", text.length());
 
             Map<String, Object> request = new HashMap<>();
             request.put("model", embeddingModel);
             request.put("prompt", text);
+            putKeepAlive(request);
+            modelResidency.touch("embedding");
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            ResponseEntity<Map> response = restTemplate.exchange(
-                embeddingEndpoint, HttpMethod.POST, entity, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                @SuppressWarnings("unchecked")
-                List<Double> embedding = (List<Double>) response.getBody().get("embedding");
-                return toFloatArray(embedding);
-            }
-
-            throw new RuntimeException("Embedding generation failed");
+            HttpEntity<byte[]> entity = new HttpEntity<>(objectMapper.writeValueAsBytes(request), BackendHeaders.JSON);
+            return singlePool.execute(endpoint -> restTemplate.execute(endpoint, HttpMethod.POST,
+                restTemplate.httpEntityCallback(entity), response -> decoder.decodeSingle(response.getBody())));
         } catch (Exception e) {
             log.error("Embedding generation error: {}", e.getMessage());
             throw new RuntimeException("Embedding generation failed: " + e.getMessage());
         }
     }
 
+    private void putKeepAlive(Map<String, Object> request) {
+        String keepAlive = modelResidency.keepAlive("embedding");
+        if (keepAlive != null) {
+            request.put("keep_alive", keepAlive);
+        }
+    }
+
     public List<float[]> generateBatchEmbeddings(List<String> texts) {
         log.info("Generating batch embeddings for {} texts", texts.size());
-        
-        return texts.stream()
-            .map(this::generateEmbedding)
-            .collect(Collectors.toList());
+
+        float[][] embeddings = new float[texts.size()][];
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings[i] = embeddingCache.get(texts.get(i));
+            if (embeddings[i] == null) {
+                missIndexes.add(i);
+                misses.add(texts.get(i));
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            log.debug("Embedding cache: {} hits, {} misses", texts.size() - misses.size(), misses.size());
+            List<float[]> generated = requestBatchEmbeddings(misses);
+            for (int i = 0; i < misses.size(); i++) {
+                embeddings[missIndexes.get(i)] = generated.get(i);
+                embeddingCache.put(misses.get(i), generated.get(i));
+            }
+        }
+
+        return Arrays.asList(embeddings);
     }
 
-    private float[] toFloatArray(List<Double> list) {
-        float[] array = new float[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            array[i] = list.get(i).floatValue();
+    private List<float[]> requestBatchEmbeddings(List<String> texts) {
+        if (batchEnabled && batchSupported) {
+            try {
+                return generateNativeBatches(texts);
+            } catch (HttpClientErrorException.NotFound | HttpClientErrorException.MethodNotAllowed e) {
+                log.warn("Batch endpoint not supported ({}), falling back to concurrent single requests",
+                    e.getStatusCode());
+                batchSupported = false;
+            }
+        }
+
+        return inferenceExecutor.mapBounded(texts, fallbackConcurrency, this::requestEmbedding);
+    }
+
+    private List<float[]> generateNativeBatches(List<String> texts) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < texts.size(); from += batchSize) {
+            batches.add(texts.subList(from, Math.min(from + batchSize, texts.size())));
+        }
+
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        inferenceExecutor.mapBounded(batches, batchConcurrency, this::embedBatch).forEach(embeddings::addAll);
+        return embeddings;
+    }
+
+    private List<float[]> embedBatch(List<String> texts) {
+        try {
+            log.debug("Embedding batch of {} texts", texts.size());
+
+            Map<String, Object> request = new HashMap<>();
+            request.put("model", embeddingModel);
+            request.put("input", texts);
+            putKeepAlive(request);
+            modelResidency.touch("embedding");
+
+            HttpEntity<byte[]> entity = new HttpEntity<>(objectMapper.writeValueAsBytes(request), BackendHeaders.JSON);
+            List<float[]> embeddings = batchPool.execute(endpoint -> restTemplate.execute(endpoint, HttpMethod.POST,
+                restTemplate.httpEntityCallback(entity), response -> decoder.decodeBatch(response.getBody(), texts.size())));
+
+            if (embeddings == null || embeddings.size() != texts.size()) {
+                throw new RuntimeException("Batch returned " + (embeddings == null ? 0 : embeddings.size())
+                    + " embeddings for " + texts.size() + " inputs");
+            }
+            return embeddings;
+        } catch (HttpClientErrorException.NotFound | HttpClientErrorException.MethodNotAllowed e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Batch embedding error: {}", e.getMessage());
+            throw new RuntimeException("Batch embedding generation failed: " + e.getMessage());
         }
-        return array;
     }
 }
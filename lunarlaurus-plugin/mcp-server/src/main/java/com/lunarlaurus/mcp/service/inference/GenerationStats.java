@@ -0,0 +1,74 @@
+package com.lunarlaurus.mcp.service.inference;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Server-reported accounting for one generation, taken from the final
+ * response object (or final stream chunk) of either backend. Fields the
+ * backend didn't report are null.
+ *
+ * @param promptTokens     tokens in the prompt
+ * @param completionTokens tokens generated
+ * @param promptMs         time spent evaluating the prompt (prefill)
+ * @param generationMs     time spent generating completion tokens
+ * @param cachedTokens     prompt tokens reused from the backend's KV cache
+ *                         rather than evaluated (included in promptTokens)
+ */
+record GenerationStats(Integer promptTokens, Integer completionTokens, Double promptMs, Double generationMs,
+                       Integer cachedTokens) {
+
+    static final GenerationStats NONE = new GenerationStats(null, null, null, null, null);
+
+    /**
+     * Ollama: prompt_eval_count / eval_count and nanosecond durations.
+     */
+    static GenerationStats fromOllama(JsonNode response) {
+        if (response == null || !response.has("eval_count")) {
+            return NONE;
+        }
+        return new GenerationStats(
+            intOrNull(response, "prompt_eval_count"),
+            intOrNull(response, "eval_count"),
+            response.has("prompt_eval_duration") ? response.get("prompt_eval_duration").asLong() / 1e6 : null,
+            response.has("eval_duration") ? response.get("eval_duration").asLong() / 1e6 : null,
+            null);
+    }
+
+    /**
+     * llama.cpp server: tokens_evaluated / tokens_predicted and a timings object in milliseconds.
+     * timings.prompt_n counts only the prompt tokens actually evaluated, so the
+     * rest of tokens_evaluated came from the slot's cache.
+     */
+    static GenerationStats fromLlamaCpp(JsonNode response) {
+        if (response == null || !(response.has("timings") || response.has("tokens_predicted"))) {
+            return NONE;
+        }
+        JsonNode timings = response.path("timings");
+        Integer promptTokens = intOrNull(response, "tokens_evaluated");
+        Integer evaluated = intOrNull(timings, "prompt_n");
+        return new GenerationStats(
+            promptTokens,
+            intOrNull(response, "tokens_predicted"),
+            timings.has("prompt_ms") ? timings.get("prompt_ms").asDouble() : null,
+            timings.has("predicted_ms") ? timings.get("predicted_ms").asDouble() : null,
+            promptTokens != null && evaluated != null ? Math.max(0, promptTokens - evaluated) : null);
+    }
+
+    /**
+     * Ollama call continued from a session context: prompt_eval_count covers
+     * only what was evaluated, so the prompt is the context plus the new text,
+     * and whatever of that wasn't evaluated came from the cache.
+     */
+    GenerationStats continuedFrom(int contextTokens, int newTokens) {
+        if (promptTokens == null) {
+            return this;
+        }
+        int total = Math.max(promptTokens, contextTokens + newTokens);
+        return new GenerationStats(total, completionTokens, promptMs, generationMs,
+            Math.min(contextTokens, total - promptTokens));
+    }
+
+    private static Integer intOrNull(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asInt() : null;
+    }
+}
@@ -1,12 +1,40 @@
 package com.lunarlaurus.mcp.service.inference;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import com.lunarlaurus.mcp.service.cache.ResponseCache;
+import com.lunarlaurus.mcp.service.cache.SemanticResponseCache;
+import com.lunarlaurus.mcp.service.execution.AdmissionController;
+import com.lunarlaurus.mcp.service.execution.CancellableCall;
+import com.lunarlaurus.mcp.service.execution.RequestHedger;
+import com.lunarlaurus.mcp.service.pool.BackendPools;
+import com.lunarlaurus.mcp.service.pool.EndpointPool;
+import com.lunarlaurus.mcp.service.residency.ModelResidency;
+import com.lunarlaurus.mcp.service.routing.BackendRouter;
+import com.lunarlaurus.mcp.service.tokenizer.TokenCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
  * Local LLM Service
@@ -14,59 +42,109 @@ import java.util.*;
  * Handles text generation requests to local LLM backends:
  * - GPU backend: Ollama/vLLM on RTX4000 for fast inference
  * - CPU backend: llama.cpp on Intel 8260 for medium tasks
+ *
+ * Both backends can also stream: Ollama emits NDJSON lines, llama.cpp emits
+ * SSE "data:" events. Chunks are parsed incrementally and handed to the caller
+ * as they arrive, so time-to-first-token is independent of generation length.
+ *
+ * Deterministic (low-temperature) requests are served from the ResponseCache
+ * when an identical prompt/model/parameter combination was generated before,
+ * and optionally from the SemanticResponseCache for near-duplicate prompts.
+ *
+ * Requests with backend "auto" are routed by the BackendRouter, which is
+ * told about every backend call so it can track load and throughput. max
+ * tokens is clamped to the room the prompt leaves in the backend's context
+ * window, counted with the backend's own tokenizer. Backend calls (not cache
+ * hits) pass through the AdmissionController, which bounds them to the
+ * backend's slots and queues the rest by priority. Each backend class is a
+ * pool of endpoints (see BackendPools) balanced by outstanding requests, with
+ * sessions and shared prompt prefixes kept on the endpoint (and llama.cpp
+ * slot) that has them cached, see PromptPrefixCache. GPU calls are reported
+ * to ModelResidency, which keeps the Ollama model loaded between them.
+ *
+ * Every backend call records llm.generation latency, streamed time to first
+ * token, and prompt/completion token counts, prefill time and decode rate as
+ * reported by the backend itself (falling back to our tokenizer counts).
+ *
+ * With llm.hedging.enabled, short prompts from hedged tools go through the
+ * RequestHedger: if the backend is slow to produce a first token, the same
+ * request is also sent to the other backend (or another endpoint of the same
+ * pool) and the first to answer wins.
  */
 @Slf4j
 @Service
 public class LocalLLMService {
 
-    @Value("${llm.gpu.endpoint:http://localhost:11434/api/generate}")
-    private String gpuEndpoint;
-
-    @Value("${llm.cpu.endpoint:http://localhost:8080/completion}")
-    private String cpuEndpoint;
-
     @Value("${llm.gpu.model:mistral:7b}")
     private String gpuModel;
 
     @Value("${llm.cpu.model:mistral-7b-instruct}")
     private String cpuModel;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final ResponseCache responseCache;
+    private final SemanticResponseCache semanticCache;
+    private final TokenCounter tokenCounter;
+    private final BackendRouter router;
+    private final AdmissionController admissionController;
+    private final RequestHedger hedger;
+    private final EndpointPool gpuPool;
+    private final EndpointPool cpuPool;
+    private final PromptPrefixCache prefixCache;
+    private final ModelResidency modelResidency;
+    private final MeterRegistry meterRegistry;
+
+    public LocalLLMService(@Qualifier("llmRestTemplate") RestTemplate restTemplate, ObjectMapper objectMapper,
+                           ResponseCache responseCache, SemanticResponseCache semanticCache,
+                           TokenCounter tokenCounter, BackendRouter router,
+                           AdmissionController admissionController, RequestHedger hedger,
+                           BackendPools backendPools, PromptPrefixCache prefixCache,
+                           ModelResidency modelResidency, MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.semanticCache = semanticCache;
+        this.tokenCounter = tokenCounter;
+        this.router = router;
+        this.admissionController = admissionController;
+        this.hedger = hedger;
+        this.gpuPool = backendPools.get("gpu");
+        this.cpuPool = backendPools.get("cpu");
+        this.prefixCache = prefixCache;
+        this.modelResidency = modelResidency;
+        this.meterRegistry = meterRegistry;
+    }
 
     public String generate(String prompt, Integer maxTokens, Double temperature, String backend) {
-        if ("gpu".equals(backend)) {
-            return generateGPU(prompt, maxTokens, temperature);
-        } else {
-            return generateCPU(prompt, maxTokens, temperature);
-        }
+        return generate(GenerationRequest.builder()
+            .prompt(prompt)
+            .maxTokens(maxTokens)
+            .temperature(temperature)
+            .backend(backend)
+            .build());
+    }
+
+    public String generate(GenerationRequest request) {
+        return execute(request, null);
     }
 
     /**
      * Generate using GPU backend (Ollama)
      */
-    private String generateGPU(String prompt, Integer maxTokens, Double temperature) {
+    private Completion generateGPU(GenerationRequest request, String affinityKey) {
         try {
             log.info("Generating text on GPU with model: {}", gpuModel);
 
-            Map<String, Object> request = new HashMap<>();
-            request.put("model", gpuModel);
-            request.put("prompt", prompt);
-            request.put("stream", false);
-            
-            Map<String, Object> options = new HashMap<>();
-            options.put("num_predict", maxTokens);
-            options.put("temperature", temperature);
-            request.put("options", options);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            ResponseEntity<Map> response = restTemplate.exchange(
-                gpuEndpoint, HttpMethod.POST, entity, Map.class);
+            PromptPrefixCache.Continuation continuation = prefixCache.continuation(request.getSessionId(), request.getPrompt());
+            Map<String, Object> body = ollamaRequest(request, continuation, false);
+            ResponseEntity<Map> response = post(gpuPool, affinityKey, null, body, (endpoint, entity) ->
+                restTemplate.exchange(endpoint, HttpMethod.POST, entity, Map.class));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return (String) response.getBody().get("response");
+                JsonNode result = objectMapper.valueToTree(response.getBody());
+                return new Completion(result.path("response").asText(""),
+                    continued(GenerationStats.fromOllama(result), continuation), ollamaContext(result));
             }
 
             throw new RuntimeException("GPU inference failed");
@@ -79,25 +157,17 @@ public class LocalLLMService {
     /**
      * Generate using CPU backend (llama.cpp server)
      */
-    private String generateCPU(String prompt, Integer maxTokens, Double temperature) {
+    private Completion generateCPU(GenerationRequest request, String affinityKey) {
         try {
             log.info("Generating text on CPU with model: {}", cpuModel);
 
-            Map<String, Object> request = new HashMap<>();
-            request.put("prompt", prompt);
-            request.put("n_predict", maxTokens);
-            request.put("temperature", temperature);
-            request.put("stop", List.of("</s>", "[/INST]", "###"));
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            ResponseEntity<Map> response = restTemplate.exchange(
-                cpuEndpoint, HttpMethod.POST, entity, Map.class);
+            Map<String, Object> body = llamaCppRequest(request, false);
+            ResponseEntity<Map> response = post(cpuPool, affinityKey, request.getSessionId(), body, (endpoint, entity) ->
+                restTemplate.exchange(endpoint, HttpMethod.POST, entity, Map.class));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return (String) response.getBody().get("content");
+                return new Completion((String) response.getBody().get("content"),
+                    GenerationStats.fromLlamaCpp(objectMapper.valueToTree(response.getBody())), null);
             }
 
             throw new RuntimeException("CPU inference failed");
@@ -106,4 +176,332 @@ public class LocalLLMService {
             throw new RuntimeException("CPU inference failed: " + e.getMessage());
         }
     }
+
+    private Map<String, Object> ollamaRequest(GenerationRequest request, PromptPrefixCache.Continuation continuation,
+                                              boolean stream) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", gpuModel);
+        body.put("prompt", continuation != null ? continuation.prompt() : request.getPrompt());
+        body.put("stream", stream);
+        if (continuation != null) {
+            body.put("context", continuation.context());
+        }
+        String keepAlive = modelResidency.keepAlive("gpu");
+        if (keepAlive != null) {
+            body.put("keep_alive", keepAlive);
+        }
+
+        Map<String, Object> options = new HashMap<>();
+        options.put("num_predict", request.getMaxTokens());
+        options.put("temperature", request.getTemperature());
+        body.put("options", options);
+        return body;
+    }
+
+    private Map<String, Object> llamaCppRequest(GenerationRequest request, boolean stream) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("prompt", request.getPrompt());
+        body.put("n_predict", request.getMaxTokens());
+        body.put("temperature", request.getTemperature());
+        body.put("stop", List.of("</s>", "[/INST]", "###"));
+        body.put("cache_prompt", prefixCache.isEnabled());
+        if (stream) {
+            body.put("stream", true);
+        }
+        return body;
+    }
+
+    /**
+     * POST body to an endpoint of pool, preferring the one affinityKey maps
+     * to. A llama.cpp session call is pinned to the session's slot on that
+     * endpoint while the slot is free.
+     */
+    private <T> T post(EndpointPool pool, String affinityKey, String slotSession, Map<String, Object> body,
+                       BiFunction<String, HttpEntity<byte[]>, T> call) {
+        return pool.execute(affinityKey, endpoint -> {
+            int slot = prefixCache.claimSlot(endpoint, slotSession);
+            try {
+                Map<String, Object> payload = body;
+                if (slot >= 0) {
+                    payload = new HashMap<>(body);
+                    payload.put("id_slot", slot);
+                }
+                return call.apply(endpoint, new HttpEntity<>(objectMapper.writeValueAsBytes(payload), BackendHeaders.JSON));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                prefixCache.releaseSlot(endpoint, slot);
+            }
+        });
+    }
+
+    private GenerationStats continued(GenerationStats stats, PromptPrefixCache.Continuation continuation) {
+        return continuation == null ? stats
+            : stats.continuedFrom(continuation.context().length, tokenCounter.count(continuation.prompt(), "gpu"));
+    }
+
+    private static int[] ollamaContext(JsonNode response) {
+        JsonNode context = response.path("context");
+        if (!context.isArray() || context.isEmpty()) {
+            return null;
+        }
+        int[] tokens = new int[context.size()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = context.get(i).asInt();
+        }
+        return tokens;
+    }
+
+    /**
+     * Generate with incremental output. Each token chunk is passed to onToken as
+     * soon as the backend emits it; the full text is returned once generation ends.
+     */
+    public String generateStream(GenerationRequest request, Consumer<String> onToken) {
+        return execute(request, onToken);
+    }
+
+    /**
+     * Serve from the exact or semantic cache when possible, otherwise dispatch to
+     * the backend (streaming if onToken is given) and remember the result.
+     */
+    private String execute(GenerationRequest original, Consumer<String> onToken) {
+        GenerationRequest request = tokenCounter.fitToContext(router.resolve(original));
+        String model = modelFor(request.getBackend());
+        boolean cacheable = responseCache.isCacheable(request);
+        if (cacheable) {
+            String cached = responseCache.get(request, model);
+            if (cached != null) {
+                log.info("Serving {} request from response cache", request.getTool());
+                return emitCached(cached, onToken);
+            }
+        }
+
+        SemanticResponseCache.Lookup semantic = semanticCache.lookup(request, model, () -> dispatch(request, null));
+        if (semantic != null && semantic.hit()) {
+            return emitCached(semantic.answer(), onToken);
+        }
+
+        String text = dispatchHedged(request, onToken);
+
+        if (cacheable) {
+            responseCache.put(request, model, text);
+        }
+        semanticCache.store(request, model, semantic, text);
+        return text;
+    }
+
+    private String dispatch(GenerationRequest request, Consumer<String> onToken) {
+        return dispatch(request, onToken, prefixCache.affinityKey(request));
+    }
+
+    @SuppressWarnings("try") // The admission permit is only held for the call, never referenced
+    private String dispatch(GenerationRequest request, Consumer<String> onToken, String affinityKey) {
+        String backend = request.getBackend();
+        boolean gpu = "gpu".equals(backend);
+        String tool = request.getTool() != null ? request.getTool() : "none";
+        long start = System.nanoTime();
+        AtomicLong firstToken = new AtomicLong();
+        Consumer<String> timedOnToken = onToken == null ? null : chunk -> {
+            firstToken.compareAndSet(0, System.nanoTime());
+            onToken.accept(chunk);
+        };
+        String outcome = "error";
+        try (AdmissionController.Permit ignored = admissionController.acquire(backend, request.getTool());
+             BackendRouter.Call call = router.begin(backend)) {
+            modelResidency.touch(backend);
+            Completion completion;
+            if (onToken == null) {
+                completion = gpu ? generateGPU(request, affinityKey) : generateCPU(request, affinityKey);
+            } else {
+                completion = gpu
+                    ? streamGPU(request, affinityKey, timedOnToken)
+                    : streamCPU(request, affinityKey, timedOnToken);
+            }
+            GenerationStats stats = completion.stats();
+            int promptTokens = stats.promptTokens() != null
+                ? stats.promptTokens() : tokenCounter.count(request.getPrompt(), backend);
+            int outputTokens = stats.completionTokens() != null
+                ? stats.completionTokens() : tokenCounter.count(completion.text(), backend);
+            call.succeeded(promptTokens, outputTokens);
+            recordCompletion(backend, tool, stats, promptTokens, outputTokens);
+            prefixCache.record(backend, tool, stats, promptTokens);
+            if (gpu) {
+                prefixCache.remember(request.getSessionId(), request.getPrompt(), completion.text(), completion.context());
+            }
+            outcome = "success";
+            return completion.text();
+        } finally {
+            if (!"success".equals(outcome) && CancellableCall.currentCancelled()) {
+                outcome = "cancelled";
+            }
+            Timer.builder("llm.generation").tag("backend", backend).tag("tool", tool).tag("outcome", outcome)
+                .description("Generation calls including admission wait")
+                .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (firstToken.get() != 0) {
+                Timer.builder("llm.generation.first_token").tag("backend", backend).tag("tool", tool)
+                    .description("Time to first streamed token including admission wait")
+                    .register(meterRegistry).record(firstToken.get() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Token counts, prompt evaluation time and decode rate for a finished call,
+     * from the backend's own accounting where it reports it.
+     */
+    private void recordCompletion(String backend, String tool, GenerationStats stats, int promptTokens, int outputTokens) {
+        meterRegistry.counter("llm.tokens", "backend", backend, "tool", tool, "type", "prompt").increment(promptTokens);
+        meterRegistry.counter("llm.tokens", "backend", backend, "tool", tool, "type", "completion").increment(outputTokens);
+        if (stats.promptMs() != null) {
+            Timer.builder("llm.prompt_eval").tag("backend", backend)
+                .description("Backend-reported prompt evaluation (prefill) time")
+                .register(meterRegistry).record((long) (stats.promptMs() * 1_000_000), TimeUnit.NANOSECONDS);
+        }
+        if (stats.generationMs() != null && stats.generationMs() > 0 && outputTokens > 0) {
+            DistributionSummary.builder("llm.generation.tokens_per_second").tag("backend", backend)
+                .description("Backend-reported decode rate per call")
+                .register(meterRegistry).record(outputTokens * 1000.0 / stats.generationMs());
+        }
+    }
+
+    /**
+     * Dispatch, hedging against a slow first token when the request qualifies.
+     * Hedged calls always stream from the backend, since the first token is
+     * what the hedger waits for.
+     */
+    private String dispatchHedged(GenerationRequest request, Consumer<String> onToken) {
+        int promptTokens = tokenCounter.count(request.getPrompt(), request.getBackend());
+        if (!hedger.isEligible(request.getTool(), promptTokens)) {
+            return dispatch(request, onToken);
+        }
+        GenerationRequest backup = hedgeTarget(request);
+        if (backup == null) {
+            return dispatch(request, onToken);
+        }
+        // The backup skips prefix affinity, which would send it to the same endpoint
+        return hedger.execute(request.getBackend(),
+            tokens -> dispatch(request, tokens), tokens -> dispatch(backup, tokens, null), onToken);
+    }
+
+    /**
+     * The other backend if the request fits its context window, otherwise the
+     * same backend when its pool has another endpoint to try.
+     */
+    private GenerationRequest hedgeTarget(GenerationRequest request) {
+        String other = "gpu".equals(request.getBackend()) ? "cpu" : "gpu";
+        if (tokenCounter.fits(tokenCounter.count(request.getPrompt(), other), request.getMaxTokens(), other)) {
+            return request.toBuilder().backend(other).build();
+        }
+        EndpointPool pool = "gpu".equals(request.getBackend()) ? gpuPool : cpuPool;
+        return pool.size() > 1 ? request : null;
+    }
+
+    private static String emitCached(String cached, Consumer<String> onToken) {
+        if (onToken != null) {
+            onToken.accept(cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Model name served by a backend class ("gpu" or "cpu").
+     */
+    public String modelFor(String backend) {
+        return "gpu".equals(backend) ? gpuModel : cpuModel;
+    }
+
+    /**
+     * Stream from GPU backend (Ollama NDJSON: one JSON object per line)
+     */
+    private Completion streamGPU(GenerationRequest request, String affinityKey, Consumer<String> onToken) {
+        try {
+            log.info("Streaming text on GPU with model: {}", gpuModel);
+
+            PromptPrefixCache.Continuation continuation = prefixCache.continuation(request.getSessionId(), request.getPrompt());
+            Completion completion = stream(gpuPool, affinityKey, null, ollamaRequest(request, continuation, true), onToken, line -> {
+                JsonNode chunk = objectMapper.readTree(line);
+                if (chunk.hasNonNull("error")) {
+                    throw new IOException(chunk.get("error").asText());
+                }
+                boolean done = chunk.path("done").asBoolean(false);
+                return new StreamChunk(chunk.path("response").asText(""), done,
+                    done ? GenerationStats.fromOllama(chunk) : null, done ? ollamaContext(chunk) : null);
+            });
+            return new Completion(completion.text(), continued(completion.stats(), continuation), completion.context());
+        } catch (Exception e) {
+            log.error("GPU streaming error: {}", e.getMessage());
+            throw new RuntimeException("GPU inference failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stream from CPU backend (llama.cpp SSE: "data: {...}" events)
+     */
+    private Completion streamCPU(GenerationRequest request, String affinityKey, Consumer<String> onToken) {
+        try {
+            log.info("Streaming text on CPU with model: {}", cpuModel);
+
+            return stream(cpuPool, affinityKey, request.getSessionId(), llamaCppRequest(request, true), onToken, line -> {
+                if (!line.startsWith("data:")) {
+                    return null; // SSE comments, event names and keep-alives
+                }
+                JsonNode chunk = objectMapper.readTree(line.substring(5).trim());
+                boolean done = chunk.path("stop").asBoolean(false);
+                return new StreamChunk(chunk.path("content").asText(""), done,
+                    done ? GenerationStats.fromLlamaCpp(chunk) : null, null);
+            });
+        } catch (Exception e) {
+            log.error("CPU streaming error: {}", e.getMessage());
+            throw new RuntimeException("CPU inference failed: " + e.getMessage());
+        }
+    }
+
+    private Completion stream(EndpointPool pool, String affinityKey, String slotSession, Map<String, Object> body,
+                              Consumer<String> onToken, ChunkParser parser) {
+        ResponseExtractor<Completion> extractor = response -> {
+            StringBuilder text = new StringBuilder();
+            GenerationStats stats = GenerationStats.NONE;
+            int[] context = null;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    StreamChunk chunk = parser.parse(line);
+                    if (chunk == null) {
+                        continue;
+                    }
+                    if (!chunk.text().isEmpty()) {
+                        text.append(chunk.text());
+                        onToken.accept(chunk.text());
+                    }
+                    if (chunk.done()) {
+                        stats = chunk.stats();
+                        context = chunk.context();
+                        break;
+                    }
+                }
+            }
+            return new Completion(text.toString(), stats, context);
+        };
+        return post(pool, affinityKey, slotSession, body, (endpoint, entity) -> restTemplate.execute(endpoint,
+            HttpMethod.POST, restTemplate.httpEntityCallback(entity), extractor));
+    }
+
+    @FunctionalInterface
+    private interface ChunkParser {
+        StreamChunk parse(String line) throws IOException;
+    }
+
+    private record StreamChunk(String text, boolean done, GenerationStats stats, int[] context) {
+    }
+
+    /**
+     * Generated text, backend accounting, and for Ollama the context that
+     * encodes prompt and response (null otherwise).
+     */
+    private record Completion(String text, GenerationStats stats, int[] context) {
+    }
 }
@@ -0,0 +1,175 @@
+package com.lunarlaurus.mcp.service.inference;
+
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prompt Prefix Cache
+ *
+ * Helps the backends reuse their KV cache for prompt prefixes they have
+ * already evaluated, instead of re-running prefill on every call:
+ * - Affinity: calls sharing a session id, or the same leading instruction
+ *   (the prompt up to its first blank line, as every tool prompt is laid
+ *   out), get the same affinity key, which the EndpointPool maps to the same
+ *   endpoint while its load allows.
+ * - llama.cpp: cache_prompt is set on every call, and session calls are
+ *   pinned to one slot (id_slot) per endpoint unless that slot is already
+ *   busy with another of our calls. Shared-instruction calls are not pinned,
+ *   so they don't queue on one slot; the server picks the slot whose cached
+ *   prompt matches best.
+ * - Ollama: a session whose new prompt extends its previous prompt +
+ *   response is continued from the returned context, sending only the new
+ *   text. ModelResidency keeps the model (and its cache) loaded.
+ *
+ * Each call's reused prompt tokens and estimated prefill time saved (reused
+ * tokens at the call's own prefill rate) are recorded as
+ * llm.tokens{type=cached} and llm.prompt_eval.saved.
+ */
+@Slf4j
+@Component
+public class PromptPrefixCache {
+
+    /**
+     * Ollama context to continue from, and the text still to send.
+     */
+    record Continuation(int[] context, String prompt) {
+    }
+
+    private record SessionContext(String text, int[] context) {
+    }
+
+    @Value("${llm.prefix-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${llm.prefix-cache.prefix-chars:1024}")
+    private int prefixChars;
+
+    @Value("${llm.prefix-cache.min-prefix-chars:64}")
+    private int minPrefixChars;
+
+    @Value("${llm.prefix-cache.max-sessions:256}")
+    private int maxSessions;
+
+    @Value("${llm.cpu.slots:1}")
+    private int cpuSlots;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> busySlots = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, SessionContext> sessions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SessionContext> eldest) {
+            return size() > maxSessions;
+        }
+    };
+
+    public PromptPrefixCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Key for endpoint affinity: the session, else the leading instruction
+     * when it is long enough to be worth keeping warm; null for neither.
+     */
+    String affinityKey(GenerationRequest request) {
+        if (!enabled) {
+            return null;
+        }
+        if (request.getSessionId() != null && !request.getSessionId().isBlank()) {
+            return "session:" + request.getSessionId();
+        }
+        String prompt = request.getPrompt();
+        if (prompt == null) {
+            return null;
+        }
+        int end = prompt.indexOf("\n\n");
+        end = Math.min(end >= 0 ? end : prompt.length(), prefixChars);
+        return end >= minPrefixChars ? "prefix:" + prompt.substring(0, end) : null;
+    }
+
+    /**
+     * Claim the slot a session is pinned to on a llama.cpp endpoint. Returns
+     * -1 (any slot) when there is no session or the slot is already in use.
+     * A claimed slot must be given back with releaseSlot.
+     */
+    int claimSlot(String endpoint, String sessionId) {
+        if (!enabled || sessionId == null || sessionId.isBlank() || cpuSlots < 1) {
+            return -1;
+        }
+        int slot = Math.floorMod(sessionId.hashCode(), cpuSlots);
+        AtomicInteger busy = busySlots.computeIfAbsent(endpoint + "#" + slot, k -> new AtomicInteger());
+        return busy.compareAndSet(0, 1) ? slot : -1;
+    }
+
+    void releaseSlot(String endpoint, int slot) {
+        if (slot >= 0) {
+            busySlots.get(endpoint + "#" + slot).set(0);
+        }
+    }
+
+    /**
+     * The Ollama context to continue a session from, when prompt extends the
+     * session's previous prompt and response; null to send the whole prompt.
+     */
+    Continuation continuation(String sessionId, String prompt) {
+        if (!enabled || sessionId == null || sessionId.isBlank()) {
+            return null;
+        }
+        SessionContext previous;
+        synchronized (sessions) {
+            previous = sessions.get(sessionId);
+        }
+        if (previous == null || prompt.length() <= previous.text().length() || !prompt.startsWith(previous.text())) {
+            return null;
+        }
+        return new Continuation(previous.context(), prompt.substring(previous.text().length()));
+    }
+
+    /**
+     * Remember a session's full conversation text and the Ollama context
+     * that encodes it, for the next turn to continue from.
+     */
+    void remember(String sessionId, String prompt, String response, int[] context) {
+        if (!enabled || sessionId == null || sessionId.isBlank() || context == null || context.length == 0) {
+            return;
+        }
+        synchronized (sessions) {
+            sessions.put(sessionId, new SessionContext(prompt + response, context));
+        }
+    }
+
+    /**
+     * Record the prompt tokens a call reused from the backend's cache and the
+     * prefill time that saved, at the rate the call evaluated the rest.
+     */
+    void record(String backend, String tool, GenerationStats stats, int promptTokens) {
+        Integer cached = stats.cachedTokens();
+        if (cached == null || cached <= 0) {
+            return;
+        }
+        meterRegistry.counter("llm.tokens", "backend", backend, "tool", tool, "type", "cached").increment(cached);
+        int evaluated = promptTokens - cached;
+        if (stats.promptMs() == null || evaluated <= 0) {
+            return;
+        }
+        double savedMs = cached * stats.promptMs() / evaluated;
+        Timer.builder("llm.prompt_eval.saved").tag("backend", backend).tag("tool", tool)
+            .description("Estimated prefill time saved by backend prompt cache reuse")
+            .register(meterRegistry).record((long) (savedMs * 1_000_000), TimeUnit.NANOSECONDS);
+        log.debug("{} on {}: reused {} of {} prompt tokens, saved ~{} ms of prefill",
+            tool, backend, cached, promptTokens, Math.round(savedMs));
+    }
+}
@@ -1,31 +1,230 @@
 package com.lunarlaurus.mcp.service.inference;
 
-import lombok.RequiredArgsConstructor;
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import com.lunarlaurus.mcp.service.execution.InferenceExecutor;
+import com.lunarlaurus.mcp.service.routing.BackendRouter;
+import com.lunarlaurus.mcp.service.tokenizer.TokenCounter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
 /**
  * Summarizer Service
- * 
- * Summarizes long text using local LLM with specialized prompts
+ *
+ * Summarizes long text using local LLM with specialized prompts.
+ *
+ * Text that fits one prompt is summarized in a single call. Longer text is
+ * summarized map-reduce style: split on paragraph boundaries (then sentences)
+ * into chunks of at most summarizer.chunk-tokens, the chunks summarized in
+ * parallel, and the joined chunk summaries summarized again - recursively
+ * while they still don't fit, for up to four passes, after which the rest is
+ * trimmed to fit. Chunk calls go through the router, so they spread over the
+ * GPU and CPU backends by load.
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class SummarizerService {
 
+    private static final String TOOL = "summarize_text";
+    private static final int PROMPT_OVERHEAD_TOKENS = 64;
+    private static final int MIN_CHUNK_TOKENS = 256;
+    private static final int MAX_REDUCE_PASSES = 4;
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?])\\s+");
+
+    @Value("${summarizer.chunk-tokens:0}")
+    private int chunkTokens;
+
+    @Value("${summarizer.chunk-summary-words:150}")
+    private int chunkSummaryWords;
+
+    @Value("${summarizer.map-concurrency:4}")
+    private int mapConcurrency;
+
     private final LocalLLMService localLLMService;
+    private final TokenCounter tokenCounter;
+    private final InferenceExecutor inferenceExecutor;
+
+    public SummarizerService(LocalLLMService localLLMService, TokenCounter tokenCounter,
+                             InferenceExecutor inferenceExecutor) {
+        this.localLLMService = localLLMService;
+        this.tokenCounter = tokenCounter;
+        this.inferenceExecutor = inferenceExecutor;
+    }
 
     public String summarize(String text, Integer maxLength) {
+        return summarize(text, maxLength, null);
+    }
+
+    /**
+     * Summarize text, reporting each finished chunk to onProgress (may be null).
+     */
+    public String summarize(String text, Integer maxLength, Consumer<String> onProgress) {
         log.info("Summarizing text of length: {}", text.length());
 
-        String prompt = String.format(
-            "[INST] Summarize the following text in approximately %d words. " +
-            "Focus on key points and main ideas. Be concise and clear.\n\nText:\n%s\n\nSummary: [/INST]",
-            maxLength, text
-        );
+        int budget = chunkBudget(maxLength);
+        String input = text;
+        int pass = 0;
+        while (pass < MAX_REDUCE_PASSES && tokenCounter.count(input) > budget) {
+            List<String> chunks = chunk(input, budget);
+            if (chunks.size() <= 1) {
+                break;
+            }
+            pass++;
+            input = String.join("\n\n", summarizeChunks(chunks, pass, onProgress));
+        }
+        int tokens = tokenCounter.count(input);
+        if (tokens > budget) {
+            // Cut the tail here rather than leave the backend to truncate the prompt silently
+            log.warn("Summarization input is still {} tokens after {} reduce passes, over the {} token budget; "
+                + "trimming it", tokens, pass, budget);
+            input = trim(input, tokens, budget);
+        }
+
+        String instruction = pass == 0
+            ? "Summarize the following text in approximately %d words. "
+                + "Focus on key points and main ideas. Be concise and clear."
+            : "The following are summaries of consecutive parts of one document. Combine them into a "
+                + "single summary of approximately %d words. Focus on key points and main ideas. Be concise and clear.";
+        return generate(String.format(instruction, maxLength), input, maxLength);
+    }
+
+    private List<String> summarizeChunks(List<String> chunks, int pass, Consumer<String> onProgress) {
+        log.info("Summarization pass {}: {} chunks", pass, chunks.size());
+        AtomicInteger done = new AtomicInteger();
+        // Progress is written to the client; a lock rather than synchronized keeps virtual threads unpinned
+        Lock progressLock = new ReentrantLock();
+        return inferenceExecutor.mapBounded(chunks, mapConcurrency, chunk -> {
+            String summary = generate(String.format(
+                "Summarize the following part of a longer document in at most %d words. "
+                    + "Keep names, numbers and conclusions.", chunkSummaryWords), chunk, chunkSummaryWords);
+            String message = String.format("Summarized chunk %d/%d (pass %d)", done.incrementAndGet(), chunks.size(), pass);
+            log.info(message);
+            if (onProgress != null) {
+                progressLock.lock();
+                try {
+                    onProgress.accept(message);
+                } finally {
+                    progressLock.unlock();
+                }
+            }
+            return summary;
+        });
+    }
+
+    private String generate(String instruction, String text, int words) {
+        String prompt = "[INST] " + instruction + "\n\nText:\n" + text + "\n\nSummary: [/INST]";
+        return localLLMService.generate(GenerationRequest.builder()
+            .prompt(prompt)
+            .maxTokens(words * 2)
+            .temperature(0.3)
+            .backend(BackendRouter.AUTO)
+            .tool(TOOL)
+            .build());
+    }
+
+    /**
+     * Input tokens per chunk: configured, or what the smaller context window
+     * leaves after the prompt and the longest summary we ask for.
+     */
+    private int chunkBudget(int maxLength) {
+        if (chunkTokens > 0) {
+            return chunkTokens;
+        }
+        int window = Math.min(tokenCounter.contextWindow("gpu"), tokenCounter.contextWindow("cpu"));
+        int output = Math.max(maxLength, chunkSummaryWords) * 2;
+        return Math.max(MIN_CHUNK_TOKENS, window - output - PROMPT_OVERHEAD_TOKENS);
+    }
+
+    /**
+     * Pack paragraphs into chunks of at most budget tokens. Oversized
+     * paragraphs are split into sentences, oversized sentences by length.
+     */
+    private List<String> chunk(String text, int budget) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (Piece piece : pieces(text, budget)) {
+            if (currentTokens > 0 && currentTokens + piece.tokens() > budget) {
+                chunks.add(current.toString());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            if (current.length() > 0) {
+                current.append("\n\n");
+            }
+            current.append(piece.text());
+            currentTokens += piece.tokens();
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+
+    private List<Piece> pieces(String text, int budget) {
+        List<Piece> pieces = new ArrayList<>();
+        for (String paragraph : PARAGRAPH_BREAK.split(text)) {
+            String trimmed = paragraph.strip();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int tokens = tokenCounter.count(trimmed);
+            if (tokens <= budget) {
+                pieces.add(new Piece(trimmed, tokens));
+                continue;
+            }
+            for (String sentence : SENTENCE_BREAK.split(trimmed)) {
+                int sentenceTokens = tokenCounter.count(sentence);
+                if (sentenceTokens <= budget) {
+                    pieces.add(new Piece(sentence, sentenceTokens));
+                } else {
+                    splitByLength(sentence, sentenceTokens, budget, pieces);
+                }
+            }
+        }
+        return pieces;
+    }
+
+    private void splitByLength(String text, int tokens, int budget, List<Piece> pieces) {
+        // At least 2 chars, so backing off a surrogate pair still makes progress
+        int chars = Math.max(2, (int) ((long) text.length() * budget / tokens * 9 / 10));
+        int end;
+        for (int start = 0; start < text.length(); start = end) {
+            end = cutAt(text, Math.min(text.length(), start + chars));
+            String slice = text.substring(start, end);
+            pieces.add(new Piece(slice, tokenCounter.count(slice)));
+        }
+    }
+
+    /**
+     * A prefix of text within budget tokens, cut by length until it fits.
+     */
+    private String trim(String text, int tokens, int budget) {
+        String trimmed = text;
+        while (tokens > budget && trimmed.length() > 2) {
+            trimmed = trimmed.substring(0, cutAt(trimmed,
+                Math.max(2, (int) ((long) trimmed.length() * budget / tokens * 9 / 10))));
+            tokens = tokenCounter.count(trimmed);
+        }
+        return trimmed;
+    }
+
+    /**
+     * end, or one char earlier if cutting there would split a surrogate pair.
+     */
+    private static int cutAt(String text, int end) {
+        return end < text.length() && Character.isLowSurrogate(text.charAt(end)) ? end - 1 : end;
+    }
 
-        // Use CPU backend for summarization (typically longer context)
-        return localLLMService.generate(prompt, maxLength * 2, 0.3, "cpu");
+    private record Piece(String text, int tokens) {
     }
 }
@@ -1,38 +1,256 @@
 package com.lunarlaurus.mcp.service.inference;
 
-import lombok.RequiredArgsConstructor;
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import com.lunarlaurus.mcp.service.cache.TranslationMemory;
+import com.lunarlaurus.mcp.service.execution.InferenceExecutor;
+import com.lunarlaurus.mcp.service.routing.BackendRouter;
+import com.lunarlaurus.mcp.service.tokenizer.TokenCounter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * Translation Service
- * 
- * Translates text between languages using local multilingual models
+ *
+ * Translates text between languages using local multilingual models.
+ *
+ * Text is split into sentence segments (lines first, then sentences),
+ * keeping the whitespace between them so the translation reassembles with
+ * the original layout. Each distinct segment is looked up in the
+ * TranslationMemory under both backends' models; the rest are packed into
+ * numbered batches of up to translation.batch-tokens, translated
+ * concurrently through the router and stored back in the memory.
+ *
+ * The output budget is sized from the source text's token count, with
+ * headroom for target languages that tokenize less densely (e.g. CJK).
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class TranslationService {
 
+    // Target text may need up to twice the source tokens, plus a little slack for short inputs
+    private static final int OUTPUT_TOKENS_PER_SOURCE_TOKEN = 2;
+    private static final int OUTPUT_TOKEN_SLACK = 32;
+    private static final int NUMBERING_TOKENS = 4;
+    private static final Pattern NUMBERED_LINE = Pattern.compile("^\\s*(\\d+)[.)]\\s?(.*)$");
+    private static final Pattern HAS_LETTER = Pattern.compile("\\p{L}");
+
+    @Value("${translation.batch-tokens:512}")
+    private int batchTokens;
+
+    @Value("${translation.batch-segments:20}")
+    private int batchSegments;
+
+    @Value("${translation.concurrency:4}")
+    private int concurrency;
+
     private final LocalLLMService localLLMService;
+    private final TokenCounter tokenCounter;
+    private final BackendRouter router;
+    private final InferenceExecutor inferenceExecutor;
+    private final TranslationMemory memory;
+
+    public TranslationService(LocalLLMService localLLMService, TokenCounter tokenCounter, BackendRouter router,
+                              InferenceExecutor inferenceExecutor, TranslationMemory memory) {
+        this.localLLMService = localLLMService;
+        this.tokenCounter = tokenCounter;
+        this.router = router;
+        this.inferenceExecutor = inferenceExecutor;
+        this.memory = memory;
+    }
 
     public String translate(String text, String sourceLang, String targetLang) {
         log.info("Translating from {} to {}", sourceLang, targetLang);
 
-        String prompt;
-        if ("auto".equals(sourceLang)) {
-            prompt = String.format(
-                "[INST] Translate the following text to %s:\n\n%s\n\nTranslation: [/INST]",
-                targetLang, text
-            );
-        } else {
-            prompt = String.format(
-                "[INST] Translate the following text from %s to %s:\n\n%s\n\nTranslation: [/INST]",
-                sourceLang, targetLang, text
-            );
-        }
-
-        // Use GPU for faster translation
-        return localLLMService.generate(prompt, text.length() / 2, 0.3, "gpu");
+        List<Part> parts = segment(text, sourceLang);
+        Map<String, String> translated = new HashMap<>();
+        Set<String> pending = new LinkedHashSet<>();
+        for (Part part : parts) {
+            if (!part.translatable() || translated.containsKey(part.key())) {
+                continue;
+            }
+            String remembered = recall(sourceLang, targetLang, part.key());
+            if (remembered != null) {
+                translated.put(part.key(), remembered);
+            } else {
+                pending.add(part.key());
+            }
+        }
+        log.info("{} distinct segments, {} from translation memory", translated.size() + pending.size(), translated.size());
+
+        List<List<String>> batches = batches(new ArrayList<>(pending));
+        for (Map<String, String> batch : inferenceExecutor.mapBounded(batches, concurrency,
+                segments -> translateBatch(segments, sourceLang, targetLang))) {
+            translated.putAll(batch);
+        }
+
+        StringBuilder result = new StringBuilder(text.length());
+        for (Part part : parts) {
+            result.append(part.translatable() ? translated.get(part.key()) : part.text());
+        }
+        return result.toString();
+    }
+
+    private String recall(String sourceLang, String targetLang, String segment) {
+        String remembered = memory.get(sourceLang, targetLang, localLLMService.modelFor("gpu"), segment);
+        return remembered != null ? remembered
+            : memory.get(sourceLang, targetLang, localLLMService.modelFor("cpu"), segment);
+    }
+
+    /**
+     * Translate one batch on whichever backend the router picks, falling back to
+     * one call per segment if the numbered reply doesn't line up.
+     */
+    private Map<String, String> translateBatch(List<String> segments, String sourceLang, String targetLang) {
+        Map<String, String> result = new HashMap<>();
+        if (segments.size() == 1) {
+            result.put(segments.get(0), translateSingle(segments.get(0), sourceLang, targetLang));
+            return result;
+        }
+
+        StringBuilder numbered = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            numbered.append(i + 1).append(". ").append(segments.get(i)).append('\n');
+        }
+        Translation translation = call("Translate each numbered line " + languages(sourceLang, targetLang)
+                + ". Reply with the same numbers, one translated line per number, and nothing else",
+            numbered.toString().strip(), segments.size());
+
+        for (String line : translation.output().split("\n")) {
+            Matcher m = NUMBERED_LINE.matcher(line);
+            if (m.matches() && !m.group(2).isBlank()) {
+                int index = Integer.parseInt(m.group(1)) - 1;
+                if (index >= 0 && index < segments.size()) {
+                    result.putIfAbsent(segments.get(index), m.group(2).strip());
+                }
+            }
+        }
+        if (result.size() == segments.size()) {
+            result.forEach((segment, text) -> memory.put(sourceLang, targetLang, translation.model(), segment, text));
+            return result;
+        }
+
+        log.debug("Numbered batch of {} segments came back misaligned, translating one by one", segments.size());
+        result.clear();
+        for (String segment : segments) {
+            result.put(segment, translateSingle(segment, sourceLang, targetLang));
+        }
+        return result;
+    }
+
+    private String translateSingle(String segment, String sourceLang, String targetLang) {
+        Translation translation = call("Translate the following text " + languages(sourceLang, targetLang), segment, 0);
+        memory.put(sourceLang, targetLang, translation.model(), segment, translation.output());
+        return translation.output();
+    }
+
+    /**
+     * One translation call, routed up front so the answering model is known
+     * for the memory key. numberedLines sizes the budget for a numbered batch.
+     */
+    private Translation call(String instruction, String body, int numberedLines) {
+        int maxTokens = tokenCounter.count(body, "gpu") * OUTPUT_TOKENS_PER_SOURCE_TOKEN
+            + OUTPUT_TOKEN_SLACK + numberedLines * NUMBERING_TOKENS;
+        GenerationRequest request = router.resolve(GenerationRequest.builder()
+            .prompt("[INST] " + instruction + ":\n\n" + body + "\n\nTranslation: [/INST]")
+            .maxTokens(maxTokens)
+            .temperature(0.3)
+            .backend(BackendRouter.AUTO)
+            .tool("translate_text")
+            .build());
+        return new Translation(localLLMService.modelFor(request.getBackend()),
+            localLLMService.generate(request).strip());
+    }
+
+    private static String languages(String sourceLang, String targetLang) {
+        return "auto".equals(sourceLang) ? "to " + targetLang : "from " + sourceLang + " to " + targetLang;
+    }
+
+    private List<List<String>> batches(List<String> segments) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (String segment : segments) {
+            int tokens = tokenCounter.count(segment, "gpu") + NUMBERING_TOKENS;
+            if (!current.isEmpty() && (currentTokens + tokens > batchTokens || current.size() >= batchSegments)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(segment);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Split text into sentence segments and the whitespace around them, so
+     * concatenating every part gives back the original text.
+     */
+    private static List<Part> segment(String text, String sourceLang) {
+        Locale locale = "auto".equals(sourceLang) ? Locale.ROOT : Locale.forLanguageTag(sourceLang);
+        BreakIterator sentences = BreakIterator.getSentenceInstance(locale);
+        List<Part> parts = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart <= text.length()) {
+            int newline = text.indexOf('\n', lineStart);
+            int lineEnd = newline >= 0 ? newline : text.length();
+            String line = text.substring(lineStart, lineEnd);
+            sentences.setText(line);
+            int start = sentences.first();
+            for (int end = sentences.next(); end != BreakIterator.DONE; start = end, end = sentences.next()) {
+                addSentence(parts, line.substring(start, end));
+            }
+            if (newline < 0) {
+                break;
+            }
+            parts.add(new Part("\n", null));
+            lineStart = newline + 1;
+        }
+        return parts;
+    }
+
+    private static void addSentence(List<Part> parts, String sentence) {
+        String core = sentence.strip();
+        if (core.isEmpty()) {
+            parts.add(new Part(sentence, null));
+            return;
+        }
+        int leading = sentence.indexOf(core);
+        if (leading > 0) {
+            parts.add(new Part(sentence.substring(0, leading), null));
+        }
+        boolean translatable = HAS_LETTER.matcher(core).find();
+        parts.add(new Part(core, translatable ? TranslationMemory.normalize(core) : null));
+        if (leading + core.length() < sentence.length()) {
+            parts.add(new Part(sentence.substring(leading + core.length()), null));
+        }
+    }
+
+    private record Translation(String model, String output) {
+    }
+
+    /**
+     * A piece of the source text; key is the normalized segment to translate,
+     * or null for whitespace and letterless text copied as-is.
+     */
+    private record Part(String text, String key) {
+        boolean translatable() {
+            return key != null;
+        }
     }
 }
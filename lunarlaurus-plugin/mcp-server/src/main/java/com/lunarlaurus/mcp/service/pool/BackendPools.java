@@ -0,0 +1,137 @@
+package com.lunarlaurus.mcp.service.pool;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backend Pools
+ *
+ * One EndpointPool per backend class, built from comma-separated endpoint
+ * lists (each falls back to the single-URL property it replaces):
+ * - gpu             → llm.gpu.endpoints       (llm.gpu.endpoint)
+ * - cpu             → llm.cpu.endpoints       (llm.cpu.endpoint)
+ * - embedding       → embedding.endpoints     (embedding.endpoint)
+ * - embedding-batch → embedding.batch.endpoints (embedding.batch.endpoint)
+ *
+ * Endpoints are probed in the background every backend.pool.health.interval-ms
+ * at scheme://host:port + the pool's health path.
+ */
+@Slf4j
+@Component
+public class BackendPools {
+
+    @Value("${llm.gpu.endpoints:${llm.gpu.endpoint:http://localhost:11434/api/generate}}")
+    private List<String> gpuEndpoints;
+
+    @Value("${llm.cpu.endpoints:${llm.cpu.endpoint:http://localhost:8080/completion}}")
+    private List<String> cpuEndpoints;
+
+    @Value("${embedding.endpoints:${embedding.endpoint:http://localhost:11434/api/embeddings}}")
+    private List<String> embeddingEndpoints;
+
+    @Value("${embedding.batch.endpoints:${embedding.batch.endpoint:http://localhost:11434/api/embed}}")
+    private List<String> embeddingBatchEndpoints;
+
+    @Value("${llm.gpu.health-path:/}")
+    private String gpuHealthPath;
+
+    @Value("${llm.cpu.health-path:/health}")
+    private String cpuHealthPath;
+
+    @Value("${embedding.health-path:/}")
+    private String embeddingHealthPath;
+
+    @Value("${backend.pool.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${backend.pool.open-ms:30000}")
+    private long openMs;
+
+    @Value("${backend.pool.affinity.max-imbalance:2}")
+    private int affinityMaxImbalance;
+
+    @Value("${backend.pool.health.enabled:true}")
+    private boolean healthEnabled;
+
+    @Value("${backend.pool.health.interval-ms:10000}")
+    private long healthIntervalMs;
+
+    @Value("${backend.pool.health.timeout-ms:2000}")
+    private int healthTimeoutMs;
+
+    @Value("${backend.pool.health.unhealthy-threshold:2}")
+    private int unhealthyThreshold;
+
+    @Value("${backend.pool.health.healthy-threshold:1}")
+    private int healthyThreshold;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, EndpointPool> pools = new HashMap<>();
+    private ScheduledExecutorService prober;
+
+    public BackendPools(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        add("gpu", gpuEndpoints, gpuHealthPath);
+        add("cpu", cpuEndpoints, cpuHealthPath);
+        add("embedding", embeddingEndpoints, embeddingHealthPath);
+        add("embedding-batch", embeddingBatchEndpoints, embeddingHealthPath);
+
+        if (healthEnabled) {
+            SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+            requestFactory.setConnectTimeout(healthTimeoutMs);
+            requestFactory.setReadTimeout(healthTimeoutMs);
+            RestTemplate healthClient = new RestTemplate(requestFactory);
+
+            prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "backend-health");
+                thread.setDaemon(true);
+                return thread;
+            });
+            prober.scheduleWithFixedDelay(() -> pools.values().forEach(pool -> pool.probe(healthClient)),
+                healthIntervalMs, healthIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void add(String name, List<String> urls, String healthPath) {
+        pools.put(name, new EndpointPool(name, urls, healthPath, failureThreshold, openMs,
+            unhealthyThreshold, healthyThreshold, affinityMaxImbalance, meterRegistry));
+        log.info("Backend pool {}: {}", name, urls);
+    }
+
+    public EndpointPool get(String name) {
+        EndpointPool pool = pools.get(name);
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown backend pool: " + name);
+        }
+        return pool;
+    }
+
+    public int endpointCount(String name) {
+        EndpointPool pool = pools.get(name);
+        return pool != null ? pool.size() : 1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+    }
+}
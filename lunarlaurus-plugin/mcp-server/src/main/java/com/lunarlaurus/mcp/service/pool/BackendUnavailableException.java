@@ -0,0 +1,14 @@
+package com.lunarlaurus.mcp.service.pool;
+
+/**
+ * Thrown when no endpoint of a backend pool can take a call: every endpoint
+ * is ejected by health checks or has an open circuit.
+ */
+public class BackendUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BackendUnavailableException(String message) {
+        super(message);
+    }
+}
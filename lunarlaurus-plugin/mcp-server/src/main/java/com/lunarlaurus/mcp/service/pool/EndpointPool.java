@@ -0,0 +1,338 @@
+package com.lunarlaurus.mcp.service.pool;
+
+import com.lunarlaurus.mcp.service.execution.CancellableCall;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Endpoint Pool
+ *
+ * The interchangeable endpoints of one backend class (e.g. several Ollama
+ * boxes serving the same model). Each call goes to the available endpoint
+ * with the fewest outstanding requests; ties rotate. Calls with an affinity
+ * key (a session or shared prompt prefix whose KV cache an endpoint may
+ * still hold) go to the key's rendezvous-hashed endpoint instead, unless it
+ * has more than affinity-max-imbalance requests over the least loaded one;
+ * the key then spills to the next endpoint in its hash order. Endpoints
+ * leaving or rejoining only move the keys that mapped to them.
+ *
+ * Per endpoint:
+ * - Circuit breaker: failure-threshold consecutive failures (connection
+ *   errors, 5xx) open the circuit for open-ms; then a single trial call
+ *   closes it again on success or reopens it on failure. 4xx responses mean
+ *   the endpoint is up and never count against it.
+ * - Health probes: unhealthy-threshold failed probes eject the endpoint,
+ *   healthy-threshold good probes reinstate it with a closed circuit.
+ *
+ * A call that cannot connect is retried once per remaining endpoint, which is
+ * safe even for streaming since nothing was sent. If every endpoint is ejected
+ * by probes, health is ignored ("panic mode") so a misconfigured probe can't
+ * take the backend down on its own.
+ *
+ * Every call is timed as backend.requests{pool, endpoint, outcome}, where
+ * outcome is success, error (counted against the endpoint), rejected (4xx
+ * and other client-side failures) or cancelled.
+ */
+@Slf4j
+public class EndpointPool {
+
+    private enum Circuit { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final String healthPath;
+    private final int failureThreshold;
+    private final long openMs;
+    private final int unhealthyThreshold;
+    private final int healthyThreshold;
+    private final int affinityMaxImbalance;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    public EndpointPool(String name, List<String> urls, String healthPath, int failureThreshold, long openMs,
+                        int unhealthyThreshold, int healthyThreshold, int affinityMaxImbalance,
+                        MeterRegistry meterRegistry) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No endpoints configured for " + name);
+        }
+        this.name = name;
+        this.healthPath = healthPath;
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+        this.unhealthyThreshold = unhealthyThreshold;
+        this.healthyThreshold = healthyThreshold;
+        this.affinityMaxImbalance = affinityMaxImbalance;
+        this.meterRegistry = meterRegistry;
+        for (String url : urls) {
+            Endpoint endpoint = new Endpoint(url.trim());
+            endpoints.add(endpoint);
+            Gauge.builder("backend.endpoint.outstanding", endpoint, Endpoint::outstanding)
+                .tag("pool", name).tag("endpoint", endpoint.url)
+                .description("Requests in flight to the endpoint").register(meterRegistry);
+            Gauge.builder("backend.endpoint.available", endpoint, e -> e.available(System.currentTimeMillis(), false) ? 1 : 0)
+                .tag("pool", name).tag("endpoint", endpoint.url)
+                .description("1 if the endpoint is healthy with a closed circuit").register(meterRegistry);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+
+    public List<String> urls() {
+        return endpoints.stream().map(endpoint -> endpoint.url).toList();
+    }
+
+    /**
+     * Run call against the chosen endpoint URL, recording the outcome for
+     * balancing and circuit breaking.
+     */
+    public <T> T execute(Function<String, T> call) {
+        return execute(null, call);
+    }
+
+    /**
+     * Run call preferring the endpoint affinityKey maps to (see class
+     * comment); a null key balances by load alone.
+     */
+    public <T> T execute(String affinityKey, Function<String, T> call) {
+        Set<Endpoint> tried = new HashSet<>();
+        Endpoint endpoint = choose(tried, affinityKey);
+        while (true) {
+            long start = System.nanoTime();
+            try {
+                T result = call.apply(endpoint.url);
+                endpoint.release(false);
+                record(endpoint, "success", start);
+                return result;
+            } catch (RuntimeException e) {
+                // An aborted hedge loser says nothing about the endpoint
+                boolean cancelled = CancellableCall.currentCancelled();
+                if (cancelled) {
+                    endpoint.abandon();
+                } else {
+                    endpoint.release(isEndpointFault(e));
+                }
+                record(endpoint, cancelled ? "cancelled" : isEndpointFault(e) ? "error" : "rejected", start);
+                tried.add(endpoint);
+                if (cancelled || !isConnectFailure(e) || tried.size() >= endpoints.size()) {
+                    throw e;
+                }
+                String failed = endpoint.url;
+                try {
+                    endpoint = choose(tried, affinityKey);
+                } catch (BackendUnavailableException none) {
+                    throw e;
+                }
+                log.warn("{}: cannot connect to {}, retrying on {}", name, failed, endpoint.url);
+            }
+        }
+    }
+
+    private void record(Endpoint endpoint, String outcome, long start) {
+        Timer.builder("backend.requests").tag("pool", name).tag("endpoint", endpoint.url).tag("outcome", outcome)
+            .description("Backend HTTP calls per endpoint")
+            .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Endpoint choose(Set<Endpoint> exclude, String affinityKey) {
+        long now = System.currentTimeMillis();
+        Endpoint chosen = leastOutstanding(exclude, now, false, affinityKey);
+        if (chosen == null) {
+            chosen = leastOutstanding(exclude, now, true, affinityKey);
+        }
+        if (chosen == null) {
+            throw new BackendUnavailableException(name + " backend unavailable: all "
+                + endpoints.size() + " endpoints are ejected or have open circuits");
+        }
+        return chosen;
+    }
+
+    private Endpoint leastOutstanding(Set<Endpoint> exclude, long now, boolean ignoreHealth, String affinityKey) {
+        if (ignoreHealth && endpoints.stream().anyMatch(e -> e.healthy)) {
+            return null; // Panic mode only when probes have ejected everything
+        }
+        int start = Math.floorMod(rotation.getAndIncrement(), endpoints.size());
+        while (true) {
+            Endpoint best = null;
+            Endpoint preferred = null;
+            long preferredScore = 0;
+            for (int i = 0; i < endpoints.size(); i++) {
+                Endpoint endpoint = endpoints.get((start + i) % endpoints.size());
+                if (exclude.contains(endpoint) || !endpoint.available(now, ignoreHealth)) {
+                    continue;
+                }
+                if (best == null || endpoint.outstanding() < best.outstanding()) {
+                    best = endpoint;
+                }
+                if (affinityKey != null) {
+                    long score = rendezvous(affinityKey, endpoint);
+                    if (preferred == null || score > preferredScore) {
+                        preferred = endpoint;
+                        preferredScore = score;
+                    }
+                }
+            }
+            if (preferred != null && endpoints.size() > 1) {
+                boolean spill = preferred.outstanding() > best.outstanding() + affinityMaxImbalance;
+                meterRegistry.counter("backend.endpoint.affinity", "pool", name,
+                    "outcome", spill ? "spilled" : "preferred").increment();
+                if (!spill) {
+                    best = preferred;
+                }
+            }
+            if (best == null || best.claim(now, ignoreHealth)) {
+                return best;
+            }
+            // Lost a race for a half-open trial slot; look again
+        }
+    }
+
+    /**
+     * Probe every endpoint's health path once.
+     */
+    public void probe(RestTemplate healthClient) {
+        for (Endpoint endpoint : endpoints) {
+            boolean ok;
+            try {
+                healthClient.getForEntity(endpoint.healthUrl, String.class);
+                ok = true;
+            } catch (Exception e) {
+                log.debug("{}: health probe of {} failed: {}", name, endpoint.healthUrl, e.getMessage());
+                ok = false;
+            }
+            endpoint.probed(ok);
+        }
+    }
+
+    // Highest-random-weight hash of key and endpoint
+    private static long rendezvous(String key, Endpoint endpoint) {
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L ^ endpoint.url.hashCode();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static boolean isEndpointFault(Throwable t) {
+        return t instanceof ResourceAccessException || t instanceof HttpServerErrorException;
+    }
+
+    private static boolean isConnectFailure(Throwable t) {
+        return t instanceof ResourceAccessException && t.getCause() instanceof ConnectException;
+    }
+
+    private final class Endpoint {
+
+        private final String url;
+        private final String healthUrl;
+        private volatile boolean healthy = true;
+        private Circuit circuit = Circuit.CLOSED;
+        private long openUntil;
+        private int outstanding;
+        private int consecutiveFailures;
+        private int probeFailures;
+        private int probeSuccesses;
+
+        private Endpoint(String url) {
+            this.url = url;
+            URI uri = URI.create(url);
+            this.healthUrl = uri.getScheme() + "://" + uri.getAuthority() + healthPath;
+        }
+
+        synchronized int outstanding() {
+            return outstanding;
+        }
+
+        synchronized boolean available(long now, boolean ignoreHealth) {
+            if (!healthy && !ignoreHealth) {
+                return false;
+            }
+            return circuit == Circuit.CLOSED || (circuit == Circuit.OPEN && now >= openUntil);
+        }
+
+        synchronized boolean claim(long now, boolean ignoreHealth) {
+            if (!available(now, ignoreHealth)) {
+                return false;
+            }
+            if (circuit == Circuit.OPEN) {
+                circuit = Circuit.HALF_OPEN;
+                log.info("{}: trial call to {}", name, url);
+            }
+            outstanding++;
+            return true;
+        }
+
+        synchronized void release(boolean failed) {
+            outstanding--;
+            if (!failed) {
+                consecutiveFailures = 0;
+                if (circuit != Circuit.CLOSED) {
+                    log.info("{}: circuit to {} closed", name, url);
+                    circuit = Circuit.CLOSED;
+                }
+                return;
+            }
+            consecutiveFailures++;
+            if (circuit == Circuit.HALF_OPEN || (circuit == Circuit.CLOSED && consecutiveFailures >= failureThreshold)) {
+                circuit = Circuit.OPEN;
+                openUntil = System.currentTimeMillis() + openMs;
+                meterRegistry.counter("backend.endpoint.circuit_opened", "pool", name, "endpoint", url).increment();
+                log.warn("{}: circuit to {} opened for {}ms after {} consecutive failures",
+                    name, url, openMs, consecutiveFailures);
+            }
+        }
+
+        /**
+         * End a call that was aborted before it completed: neither success nor
+         * failure. A half-open trial that never finished re-opens the circuit,
+         * so the next call gets a fresh trial.
+         */
+        synchronized void abandon() {
+            outstanding--;
+            if (circuit == Circuit.HALF_OPEN) {
+                circuit = Circuit.OPEN;
+            }
+        }
+
+        synchronized void probed(boolean ok) {
+            if (ok) {
+                probeFailures = 0;
+                probeSuccesses++;
+                if (!healthy && probeSuccesses >= healthyThreshold) {
+                    healthy = true;
+                    circuit = Circuit.CLOSED;
+                    consecutiveFailures = 0;
+                    log.info("{}: endpoint {} reinstated", name, url);
+                }
+            } else {
+                probeSuccesses = 0;
+                probeFailures++;
+                if (healthy && probeFailures >= unhealthyThreshold) {
+                    healthy = false;
+                    meterRegistry.counter("backend.endpoint.ejections", "pool", name, "endpoint", url).increment();
+                    log.warn("{}: endpoint {} ejected after {} failed health probes", name, url, probeFailures);
+                }
+            }
+        }
+    }
+}
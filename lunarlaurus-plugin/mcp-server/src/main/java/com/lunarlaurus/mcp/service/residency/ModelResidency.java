@@ -0,0 +1,409 @@
+package com.lunarlaurus.mcp.service.residency;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.lunarlaurus.mcp.service.pool.BackendPools;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model Residency
+ *
+ * Keeps the Ollama models behind the gpu and embedding pools loaded, so
+ * the first call after startup or an idle spell doesn't pay a multi-second
+ * model load. Every residency.interval-ms the loaded models of each Ollama
+ * host are read from /api/ps; a model that should be resident but isn't
+ * loaded, or expires within two intervals, is (re)loaded with an empty
+ * request carrying its keep-alive. Policies (residency.policy):
+ * - always:  keep every model loaded
+ * - traffic: keep a model loaded while it was used within idle-minutes,
+ *   and preload it preload-lead-minutes ahead of hours of the week that
+ *   have seen at least preload-min-calls calls (halved every week)
+ * - startup: only warm at startup; Ollama unloads after the keep-alive
+ *
+ * With residency.warm-on-startup, all models are loaded in the background
+ * right after startup. llama.cpp loads its model for the life of the server
+ * and is not managed here.
+ *
+ * Per model and endpoint, residency is exported as model.resident (1 warm,
+ * 0 cold) and in the modelResidency health details; loads are timed as
+ * model.warmup, and calls made while a model was known to be cold counted as
+ * model.cold_calls.
+ */
+@Slf4j
+@Component
+public class ModelResidency {
+
+    public enum State { UNKNOWN, COLD, WARM }
+
+    private static final int HOURS_PER_WEEK = 168;
+    private static final double WEEKLY_DECAY = 0.5;
+
+    @Value("${residency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${residency.warm-on-startup:true}")
+    private boolean warmOnStartup;
+
+    @Value("${residency.policy:traffic}")
+    private String policy;
+
+    @Value("${residency.interval-ms:60000}")
+    private long intervalMs;
+
+    @Value("${residency.idle-minutes:60}")
+    private long idleMinutes;
+
+    @Value("${residency.preload-lead-minutes:10}")
+    private long preloadLeadMinutes;
+
+    @Value("${residency.preload-min-calls:3}")
+    private double preloadMinCalls;
+
+    @Value("${llm.gpu.model:mistral:7b}")
+    private String gpuModel;
+
+    @Value("${llm.gpu.keep-alive:30m}")
+    private String gpuKeepAlive;
+
+    @Value("${embedding.model:nomic-embed-text}")
+    private String embeddingModel;
+
+    @Value("${embedding.keep-alive:30m}")
+    private String embeddingKeepAlive;
+
+    private final RestTemplate restTemplate;
+    private final BackendPools backendPools;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Model> models = new LinkedHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public ModelResidency(@Qualifier("llmRestTemplate") RestTemplate restTemplate, BackendPools backendPools,
+                          MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.backendPools = backendPools;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        models.put("gpu", new Model("gpu", gpuModel, gpuKeepAlive, "/api/generate", hosts("gpu")));
+        models.put("embedding", new Model("embedding", embeddingModel, embeddingKeepAlive, "/api/embed",
+            hosts("embedding", "embedding-batch")));
+        for (Model model : models.values()) {
+            for (Resident resident : model.residents.values()) {
+                Gauge.builder("model.resident", resident, r -> r.state == State.WARM ? 1 : 0)
+                    .tag("model", model.name).tag("endpoint", resident.host)
+                    .description("1 if the model is loaded on the endpoint").register(meterRegistry);
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "model-residency");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (warmOnStartup) {
+            scheduler.execute(() -> models.values().forEach(model -> model.residents.values()
+                .forEach(resident -> load(model, resident, "startup"))));
+        }
+        scheduler.scheduleWithFixedDelay(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("Model residency policy: {} for {} (every {}ms)", policy,
+            models.values().stream().map(m -> m.name).toList(), intervalMs);
+    }
+
+    // Distinct Ollama hosts (scheme://host:port) of the pools
+    private List<String> hosts(String... pools) {
+        Set<String> hosts = new LinkedHashSet<>();
+        for (String pool : pools) {
+            for (String url : backendPools.get(pool).urls()) {
+                URI uri = URI.create(url);
+                hosts.add(uri.getScheme() + "://" + uri.getAuthority());
+            }
+        }
+        return new ArrayList<>(hosts);
+    }
+
+    /**
+     * Note a call to the model behind a backend ("gpu" or "embedding"), for
+     * the traffic policy and cold-call accounting.
+     */
+    public void touch(String backend) {
+        Model model = models.get(backend);
+        if (model == null) {
+            return;
+        }
+        model.touch(System.currentTimeMillis());
+        if (model.residents.values().stream().allMatch(r -> r.state == State.COLD)) {
+            meterRegistry.counter("model.cold_calls", "model", model.name).increment();
+        }
+    }
+
+    /**
+     * keep_alive to send with requests to a backend's model, or null for the
+     * server default.
+     */
+    public String keepAlive(String backend) {
+        Model model = models.get(backend);
+        return model != null && !model.keepAlive.isBlank() ? model.keepAlive : null;
+    }
+
+    /**
+     * Residency of every model per endpoint, for health details.
+     */
+    public Map<String, Object> details() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("policy", enabled ? policy : "disabled");
+        for (Model model : models.values()) {
+            Map<String, Object> endpoints = new LinkedHashMap<>();
+            for (Resident resident : model.residents.values()) {
+                Map<String, Object> endpoint = new LinkedHashMap<>();
+                endpoint.put("state", resident.state.name().toLowerCase());
+                if (resident.expiresAt != null) {
+                    endpoint.put("expiresAt", resident.expiresAt.toString());
+                }
+                endpoints.put(resident.host, endpoint);
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("model", model.name);
+            long lastUsed = model.lastUsed;
+            if (lastUsed > 0) {
+                entry.put("lastUsed", Instant.ofEpochMilli(lastUsed).toString());
+            }
+            entry.put("wanted", wanted(model, System.currentTimeMillis()));
+            entry.put("endpoints", endpoints);
+            details.put(model.backend, entry);
+        }
+        return details;
+    }
+
+    private void tick() {
+        try {
+            poll();
+            long now = System.currentTimeMillis();
+            for (Model model : models.values()) {
+                model.roll(now);
+                if (!wanted(model, now)) {
+                    continue;
+                }
+                for (Resident resident : model.residents.values()) {
+                    // UNKNOWN means /api/ps failed: the host is down, and the pool's probes deal with that
+                    if (resident.state == State.COLD
+                            || (resident.state == State.WARM && resident.expiresBefore(now + 2 * intervalMs))) {
+                        load(model, resident, "always".equals(policy) ? "keep_alive" : reason(model, now));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Model residency check failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean wanted(Model model, long now) {
+        switch (policy) {
+            case "always":
+                return true;
+            case "traffic":
+                return recentlyUsed(model, now)
+                    || model.expected(now + TimeUnit.MINUTES.toMillis(preloadLeadMinutes), preloadMinCalls);
+            default:
+                return false;
+        }
+    }
+
+    private boolean recentlyUsed(Model model, long now) {
+        return model.lastUsed > 0 && now - model.lastUsed < TimeUnit.MINUTES.toMillis(idleMinutes);
+    }
+
+    private String reason(Model model, long now) {
+        return recentlyUsed(model, now) ? "keep_alive" : "predicted";
+    }
+
+    /**
+     * Read the loaded models of every host from /api/ps.
+     */
+    private void poll() {
+        Set<String> hosts = new HashSet<>();
+        models.values().forEach(model -> hosts.addAll(model.residents.keySet()));
+        for (String host : hosts) {
+            Map<String, Instant> loaded;
+            try {
+                loaded = loadedModels(host);
+            } catch (RuntimeException e) {
+                log.debug("Cannot list loaded models on {}: {}", host, e.getMessage());
+                loaded = null;
+            }
+            for (Model model : models.values()) {
+                Resident resident = model.residents.get(host);
+                if (resident == null) {
+                    continue;
+                }
+                if (loaded == null) {
+                    resident.update(State.UNKNOWN, null);
+                } else {
+                    String name = normalize(model.name);
+                    resident.update(loaded.containsKey(name) ? State.WARM : State.COLD, loaded.get(name));
+                }
+            }
+        }
+    }
+
+    private Map<String, Instant> loadedModels(String host) {
+        JsonNode response = restTemplate.getForObject(host + "/api/ps", JsonNode.class);
+        Map<String, Instant> loaded = new LinkedHashMap<>();
+        if (response != null) {
+            for (JsonNode model : response.path("models")) {
+                String name = model.hasNonNull("name") ? model.get("name").asText() : model.path("model").asText();
+                loaded.put(normalize(name), parseInstant(model.path("expires_at").asText(null)));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Load a model with an empty request, which also resets its keep-alive.
+     */
+    private void load(Model model, Resident resident, String reason) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("model", model.name);
+        if (!model.keepAlive.isBlank()) {
+            request.put("keep_alive", model.keepAlive);
+        }
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            restTemplate.postForObject(resident.host + model.loadPath, request, String.class);
+            resident.update(State.WARM, null);
+            log.info("Loaded {} on {} ({}) in {}ms", model.name, resident.host, reason,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            outcome = "error";
+            log.warn("Could not load {} on {} ({}): {}", model.name, resident.host, reason, e.getMessage());
+        } finally {
+            Timer.builder("model.warmup").tag("model", model.name).tag("endpoint", resident.host)
+                .tag("reason", reason).tag("outcome", outcome)
+                .description("Model load and keep-alive requests")
+                .register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Ollama reports untagged models as name:latest
+    private static String normalize(String name) {
+        return name.contains(":") ? name : name + ":latest";
+    }
+
+    private static Instant parseInstant(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * One managed model, its hosts, and its calls per hour of the week.
+     */
+    private static final class Model {
+
+        private final String backend;
+        private final String name;
+        private final String keepAlive;
+        private final String loadPath;
+        private final Map<String, Resident> residents = new LinkedHashMap<>();
+        private final double[] hourly = new double[HOURS_PER_WEEK];
+        private volatile long lastUsed;
+        private int currentHour = -1;
+
+        private Model(String backend, String name, String keepAlive, String loadPath, List<String> hosts) {
+            this.backend = backend;
+            this.name = name;
+            this.keepAlive = keepAlive;
+            this.loadPath = loadPath;
+            hosts.forEach(host -> residents.put(host, new Resident(host)));
+        }
+
+        synchronized void touch(long now) {
+            lastUsed = now;
+            roll(now);
+            hourly[currentHour]++;
+        }
+
+        // Entering a new hour of the week ages what that hour saw last week
+        synchronized void roll(long now) {
+            int hour = hourOfWeek(now);
+            if (hour != currentHour) {
+                hourly[hour] *= WEEKLY_DECAY;
+                currentHour = hour;
+            }
+        }
+
+        synchronized boolean expected(long at, double minCalls) {
+            return hourly[hourOfWeek(at)] >= minCalls;
+        }
+
+        private static int hourOfWeek(long epochMs) {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault());
+            return (time.getDayOfWeek().getValue() - 1) * 24 + time.getHour();
+        }
+    }
+
+    /**
+     * A model's state on one host, as last seen.
+     */
+    private static final class Resident {
+
+        private final String host;
+        private volatile State state = State.UNKNOWN;
+        private volatile Instant expiresAt;
+
+        private Resident(String host) {
+            this.host = host;
+        }
+
+        void update(State state, Instant expiresAt) {
+            this.state = state;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean expiresBefore(long epochMs) {
+            return expiresAt != null && expiresAt.toEpochMilli() < epochMs;
+        }
+    }
+}
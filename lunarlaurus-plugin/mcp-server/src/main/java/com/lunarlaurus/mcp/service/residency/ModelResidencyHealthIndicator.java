@@ -0,0 +1,26 @@
+package com.lunarlaurus.mcp.service.residency;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports which models are warm or cold on each endpoint under
+ * /actuator/health (component "modelResidency"). A cold model only costs
+ * load latency on the next call, so it never makes the server unhealthy.
+ * Web only: the stdio profile has no actuator endpoints to report it on.
+ */
+@Component
+@ConditionalOnWebApplication
+@RequiredArgsConstructor
+public class ModelResidencyHealthIndicator implements HealthIndicator {
+
+    private final ModelResidency modelResidency;
+
+    @Override
+    public Health health() {
+        return Health.up().withDetails(modelResidency.details()).build();
+    }
+}
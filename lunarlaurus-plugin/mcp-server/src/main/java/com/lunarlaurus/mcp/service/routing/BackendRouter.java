@@ -0,0 +1,243 @@
+package com.lunarlaurus.mcp.service.routing;
+
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import com.lunarlaurus.mcp.service.execution.AdmissionController;
+import com.lunarlaurus.mcp.service.pool.BackendPools;
+import com.lunarlaurus.mcp.service.tokenizer.TokenCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backend Router
+ *
+ * Single routing engine for every generation request. Requests with backend
+ * "auto" (or none) are resolved here; explicit "gpu"/"cpu" pass through.
+ *
+ * The adaptive policy (default) tracks live in-flight and queued calls, EWMA
+ * latency and EWMA throughput per backend, and picks the backend with the
+ * lowest predicted completion time among those whose context window fits
+ * prompt + max tokens:
+ *
+ *   service   = (promptTokens * prefill-cost + maxTokens) / tokensPerSecond
+ *   predicted = service * (1 + (inFlight + queued) / slots)
+ *
+ * Throughput starts from llm.&lt;backend&gt;.expected-tokens-per-second and is
+ * learned from completed calls. The static policy keeps the original token
+ * thresholds (routing.static.*) as a fallback.
+ */
+@Slf4j
+@Component
+public class BackendRouter {
+
+    public static final String AUTO = "auto";
+
+    @Value("${routing.policy:adaptive}")
+    private String policy;
+
+    @Value("${routing.static.gpu-max-tokens:2000}")
+    private int gpuMaxTokens;
+
+    @Value("${routing.static.cpu-max-tokens:8000}")
+    private int cpuMaxTokens;
+
+    // Weight of the newest sample in the moving averages
+    @Value("${routing.ewma-alpha:0.2}")
+    private double alpha;
+
+    // Cost of a prompt token relative to a generated one (prefill is batched)
+    @Value("${routing.prefill-cost:0.1}")
+    private double prefillCost;
+
+    @Value("${llm.gpu.slots:2}")
+    private int gpuSlots;
+
+    @Value("${llm.cpu.slots:1}")
+    private int cpuSlots;
+
+    @Value("${llm.gpu.expected-tokens-per-second:40}")
+    private double gpuTokensPerSecond;
+
+    @Value("${llm.cpu.expected-tokens-per-second:8}")
+    private double cpuTokensPerSecond;
+
+    private final TokenCounter tokenCounter;
+    private final AdmissionController admissionController;
+    private final BackendPools backendPools;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, BackendStats> backends = new LinkedHashMap<>();
+
+    public BackendRouter(TokenCounter tokenCounter, AdmissionController admissionController,
+                         BackendPools backendPools, MeterRegistry meterRegistry) {
+        this.tokenCounter = tokenCounter;
+        this.admissionController = admissionController;
+        this.backendPools = backendPools;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        backends.put("gpu", new BackendStats("gpu", gpuSlots * backendPools.endpointCount("gpu"), gpuTokensPerSecond));
+        backends.put("cpu", new BackendStats("cpu", cpuSlots * backendPools.endpointCount("cpu"), cpuTokensPerSecond));
+        for (BackendStats stats : backends.values()) {
+            Gauge.builder("backend.inflight", stats.inFlight, AtomicInteger::get)
+                .tag("backend", stats.name).description("Generation calls currently running on the backend")
+                .register(meterRegistry);
+            Gauge.builder("backend.tokens_per_second", stats, BackendStats::tokensPerSecond)
+                .tag("backend", stats.name).description("EWMA backend throughput in weighted tokens per second")
+                .register(meterRegistry);
+            Gauge.builder("backend.latency.ewma", stats, BackendStats::latencyMs)
+                .tag("backend", stats.name).description("EWMA generation latency in milliseconds")
+                .register(meterRegistry);
+        }
+        log.info("Backend router policy: {} (gpu slots {}, cpu slots {})",
+            policy, backends.get("gpu").slots, backends.get("cpu").slots);
+    }
+
+    /**
+     * The request with its backend resolved. Returns the request itself when
+     * the caller already picked a concrete backend.
+     */
+    public GenerationRequest resolve(GenerationRequest request) {
+        String requested = request.getBackend();
+        if (requested != null && !AUTO.equals(requested)) {
+            return request;
+        }
+        int promptTokens = tokenCounter.count(request.getPrompt());
+        int maxTokens = request.getMaxTokens() != null ? request.getMaxTokens() : 0;
+        String backend = "static".equals(policy)
+            ? routeStatic(promptTokens, maxTokens)
+            : routeAdaptive(promptTokens, maxTokens);
+        meterRegistry.counter("routing.decisions", "backend", backend, "policy", policy).increment();
+        return request.toBuilder().backend(backend).build();
+    }
+
+    private String routeAdaptive(int promptTokens, int maxTokens) {
+        String best = null;
+        double bestSeconds = Double.MAX_VALUE;
+        for (BackendStats stats : backends.values()) {
+            if (!tokenCounter.fits(promptTokens, maxTokens, stats.name)) {
+                continue;
+            }
+            double seconds = stats.predictSeconds(promptTokens * prefillCost + maxTokens);
+            log.debug("Predicted {}s on {} ({} in flight, {} queued)", String.format("%.2f", seconds), stats.name,
+                stats.inFlight.get(), admissionController.queued(stats.name));
+            if (seconds < bestSeconds) {
+                best = stats.name;
+                bestSeconds = seconds;
+            }
+        }
+        if (best == null) {
+            log.info("Request exceeds local capacity, consider cloud fallback (tokens: {})", promptTokens);
+            return largestContextBackend();
+        }
+        log.info("Routing to {} backend (tokens: {}, predicted {}s)", best, promptTokens, String.format("%.2f", bestSeconds));
+        return best;
+    }
+
+    private String routeStatic(int promptTokens, int maxTokens) {
+        if (promptTokens < gpuMaxTokens && tokenCounter.fits(promptTokens, maxTokens, "gpu")) {
+            log.info("Routing to GPU backend (tokens: {})", promptTokens);
+            return "gpu";
+        } else if (promptTokens < cpuMaxTokens && tokenCounter.fits(promptTokens, maxTokens, "cpu")) {
+            log.info("Routing to CPU backend (tokens: {})", promptTokens);
+            return "cpu";
+        }
+        log.info("Request exceeds local capacity, consider cloud fallback (tokens: {})", promptTokens);
+        return "cpu"; // Still use CPU but with warning
+    }
+
+    private String largestContextBackend() {
+        String largest = "cpu";
+        for (String backend : backends.keySet()) {
+            if (tokenCounter.contextWindow(backend) > tokenCounter.contextWindow(largest)) {
+                largest = backend;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Mark a call as running on backend. Close the returned Call when it ends,
+     * after reporting token counts through succeeded() if it completed.
+     */
+    public Call begin(String backend) {
+        BackendStats stats = backends.get(backend);
+        int others = stats != null ? stats.inFlight.getAndIncrement() : 0;
+        return new Call(stats, others, System.nanoTime());
+    }
+
+    public final class Call implements AutoCloseable {
+
+        private final BackendStats stats;
+        private final int othersAtStart;
+        private final long startNanos;
+        private boolean closed;
+
+        private Call(BackendStats stats, int othersAtStart, long startNanos) {
+            this.stats = stats;
+            this.othersAtStart = othersAtStart;
+            this.startNanos = startNanos;
+        }
+
+        public void succeeded(int promptTokens, int outputTokens) {
+            if (stats != null) {
+                stats.record(System.nanoTime() - startNanos, promptTokens * prefillCost + outputTokens, othersAtStart);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed && stats != null) {
+                stats.inFlight.decrementAndGet();
+            }
+            closed = true;
+        }
+    }
+
+    private final class BackendStats {
+
+        private final String name;
+        private final int slots;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double tokensPerSecond;
+        private volatile double latencyMs;
+
+        private BackendStats(String name, int slots, double tokensPerSecond) {
+            this.name = name;
+            this.slots = Math.max(1, slots);
+            this.tokensPerSecond = tokensPerSecond;
+        }
+
+        double predictSeconds(double weightedTokens) {
+            double service = weightedTokens / tokensPerSecond;
+            int load = inFlight.get() + admissionController.queued(name);
+            return service * (1 + (double) load / slots);
+        }
+
+        synchronized void record(long elapsedNanos, double weightedTokens, int othersAtStart) {
+            double ms = elapsedNanos / 1_000_000.0;
+            latencyMs = latencyMs == 0 ? ms : alpha * ms + (1 - alpha) * latencyMs;
+            if (weightedTokens > 0 && ms > 0) {
+                // Undo the slowdown from sharing the backend, so predictSeconds doesn't count it twice
+                double solo = weightedTokens * 1000 / ms * (1 + (double) othersAtStart / slots);
+                tokensPerSecond = alpha * solo + (1 - alpha) * tokensPerSecond;
+            }
+        }
+
+        double tokensPerSecond() {
+            return tokensPerSecond;
+        }
+
+        double latencyMs() {
+            return latencyMs;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.lunarlaurus.mcp.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped, append-only file of fixed-size float32 vector records.
+ *
+ * Layout: a 64-byte header followed by records of [keyBytes key][dimension x float32],
+ * little-endian. The file is mapped in segments of up to ~1 GiB so stores larger than
+ * a single MappedByteBuffer still work; the last segment grows by doubling so small
+ * stores stay small on disk. Records are read straight from the page cache,
+ * so vectors stay off-heap and survive restarts without a load step.
+ *
+ * The header carries a caller-supplied tag (e.g. a hash of the embedding model); opening
+ * with a different tag or dimension discards the existing contents.
+ */
+@Slf4j
+public class MappedVectorFile implements Closeable {
+
+    private static final int MAGIC = 0x4C4C5646; // "LLVF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int INITIAL_SEGMENT_RECORDS = 1024;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_DIMENSION = 8;
+    private static final int OFFSET_KEY_BYTES = 12;
+    private static final int OFFSET_COUNT = 16;
+    private static final int OFFSET_TAG = 24;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int dimension;
+    private final int keyBytes;
+    private final int recordBytes;
+    private final int recordsPerSegment;
+    // Copy-on-write so readers never see a segment being remapped
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private int lastSegmentCapacity;
+
+    private volatile int count;
+
+    private MappedVectorFile(Path path, int dimension, int keyBytes, long tag) throws IOException {
+        this.path = path;
+        this.dimension = dimension;
+        this.keyBytes = keyBytes;
+        this.recordBytes = keyBytes + dimension * Float.BYTES;
+        this.recordsPerSegment = (int) (MAX_SEGMENT_BYTES / recordBytes);
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        boolean existing = channel.size() >= HEADER_BYTES;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (existing && header.getInt(OFFSET_MAGIC) == MAGIC
+                && header.getInt(OFFSET_VERSION) == VERSION
+                && header.getInt(OFFSET_DIMENSION) == dimension
+                && header.getInt(OFFSET_KEY_BYTES) == keyBytes
+                && header.getLong(OFFSET_TAG) == tag) {
+            long stored = header.getLong(OFFSET_COUNT);
+            long available = (channel.size() - HEADER_BYTES) / recordBytes;
+            this.count = (int) Math.min(stored, available);
+        } else {
+            if (existing) {
+                log.info("Discarding vector file {} (format, dimension or tag changed)", path);
+            }
+            channel.truncate(HEADER_BYTES);
+            header.putInt(OFFSET_MAGIC, MAGIC);
+            header.putInt(OFFSET_VERSION, VERSION);
+            header.putInt(OFFSET_DIMENSION, dimension);
+            header.putInt(OFFSET_KEY_BYTES, keyBytes);
+            header.putLong(OFFSET_TAG, tag);
+            header.putLong(OFFSET_COUNT, 0);
+            this.count = 0;
+        }
+
+        int fullSegments = count / recordsPerSegment;
+        for (int i = 0; i < fullSegments; i++) {
+            mapSegment(i, recordsPerSegment);
+        }
+        int remainder = count % recordsPerSegment;
+        if (remainder > 0) {
+            mapSegment(fullSegments, growCapacity(INITIAL_SEGMENT_RECORDS, remainder));
+        }
+    }
+
+    /**
+     * Open (or create) a vector file. Existing contents are kept only if the
+     * stored dimension, key size and tag all match.
+     */
+    public static MappedVectorFile open(Path path, int dimension, int keyBytes, long tag) {
+        try {
+            return new MappedVectorFile(path, dimension, keyBytes, tag);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open vector file " + path, e);
+        }
+    }
+
+    /**
+     * Read the dimension stored in an existing file, or -1 if there is no usable file.
+     */
+    public static int storedDimension(Path path, long tag) {
+        if (!Files.isRegularFile(path)) {
+            return -1;
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) {
+                return -1;
+            }
+            MappedByteBuffer h = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            h.order(ByteOrder.LITTLE_ENDIAN);
+            boolean valid = h.getInt(OFFSET_MAGIC) == MAGIC && h.getLong(OFFSET_TAG) == tag;
+            return valid ? h.getInt(OFFSET_DIMENSION) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Append a record and return its slot number.
+     */
+    public synchronized int append(byte[] key, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        int slot = count;
+        int segment = slot / recordsPerSegment;
+        int indexInSegment = slot % recordsPerSegment;
+        if (segment == segments.length) {
+            mapSegment(segment, Math.min(INITIAL_SEGMENT_RECORDS, recordsPerSegment));
+        } else if (indexInSegment >= lastSegmentCapacity) {
+            mapSegment(segment, growCapacity(lastSegmentCapacity * 2, indexInSegment + 1));
+        }
+        MappedByteBuffer buffer = segments[segment];
+        int offset = indexInSegment * recordBytes;
+        for (int i = 0; i < keyBytes; i++) {
+            buffer.put(offset + i, key[i]);
+        }
+        offset += keyBytes;
+        for (int i = 0; i < dimension; i++) {
+            buffer.putFloat(offset + i * Float.BYTES, vector[i]);
+        }
+        count = slot + 1;
+        header.putLong(OFFSET_COUNT, count);
+        return slot;
+    }
+
+    public void readKey(int slot, byte[] dst) {
+        MappedByteBuffer buffer = segmentFor(slot);
+        int offset = (slot % recordsPerSegment) * recordBytes;
+        for (int i = 0; i < keyBytes; i++) {
+            dst[i] = buffer.get(offset + i);
+        }
+    }
+
+    public float[] readVector(int slot) {
+        float[] vector = new float[dimension];
+        readVector(slot, vector);
+        return vector;
+    }
+
+    public void readVector(int slot, float[] dst) {
+        MappedByteBuffer buffer = segmentFor(slot);
+        int offset = (slot % recordsPerSegment) * recordBytes + keyBytes;
+        for (int i = 0; i < dimension; i++) {
+            dst[i] = buffer.getFloat(offset + i * Float.BYTES);
+        }
+    }
+
+    /**
+     * Dot product between a stored vector and query, computed in place on the mapping.
+     */
+    public float dot(int slot, float[] query) {
+        MappedByteBuffer buffer = segmentFor(slot);
+        int offset = (slot % recordsPerSegment) * recordBytes + keyBytes;
+        float sum = 0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += buffer.getFloat(offset + i * Float.BYTES) * query[i];
+        }
+        return sum;
+    }
+
+    public synchronized void flush() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            flush();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Error closing vector file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private MappedByteBuffer segmentFor(int slot) {
+        if (slot < 0 || slot >= count) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " outside [0, " + count + ")");
+        }
+        return segments[slot / recordsPerSegment];
+    }
+
+    private int growCapacity(int proposed, int required) {
+        int capacity = Math.max(proposed, INITIAL_SEGMENT_RECORDS);
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        return Math.min(capacity, recordsPerSegment);
+    }
+
+    /**
+     * Map (or remap with a larger capacity) one segment. Mapping past the end
+     * of the file extends it.
+     */
+    private void mapSegment(int segment, int capacityRecords) {
+        try {
+            long start = HEADER_BYTES + (long) segment * recordsPerSegment * recordBytes;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                (long) capacityRecords * recordBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            MappedByteBuffer[] updated = Arrays.copyOf(segments, Math.max(segments.length, segment + 1));
+            updated[segment] = buffer;
+            segments = updated;
+            lastSegmentCapacity = capacityRecords;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map segment " + segment + " of " + path, e);
+        }
+    }
+}
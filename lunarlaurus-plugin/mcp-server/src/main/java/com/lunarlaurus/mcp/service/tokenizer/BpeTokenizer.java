@@ -0,0 +1,109 @@
+package com.lunarlaurus.mcp.service.tokenizer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Byte-level BPE tokenizer (GPT-2 family, also LLaMA 3 / Qwen GGUF "gpt2" vocabularies).
+ *
+ * Text is pre-split into words, each word's UTF-8 bytes are mapped to the
+ * printable byte alphabet, and merges are applied lowest rank first. Counts
+ * per word are memoized, since prose and code repeat the same words heavily.
+ */
+public final class BpeTokenizer implements Tokenizer {
+
+    private static final Pattern PRETOKENIZE = Pattern.compile(
+        "'s|'t|'re|'ve|'m|'ll|'d| ?\\p{L}+| ?\\p{N}+| ?[^\\s\\p{L}\\p{N}]+|\\s+(?!\\S)|\\s+");
+
+    private static final int MAX_CACHED_WORDS = 100_000;
+    private static final char[] BYTE_ALPHABET = byteAlphabet();
+
+    private final Set<String> vocab;
+    // "left right" → merge rank
+    private final Map<String, Integer> ranks;
+    private final ConcurrentHashMap<String, Integer> wordCounts = new ConcurrentHashMap<>();
+
+    public BpeTokenizer(Set<String> vocab, Map<String, Integer> ranks) {
+        this.vocab = vocab;
+        this.ranks = ranks;
+    }
+
+    @Override
+    public int countTokens(String text) {
+        int tokens = 0;
+        Matcher matcher = PRETOKENIZE.matcher(text);
+        while (matcher.find()) {
+            tokens += countWord(toByteAlphabet(matcher.group()));
+        }
+        return tokens;
+    }
+
+    private int countWord(String word) {
+        if (vocab.contains(word)) {
+            return 1;
+        }
+        Integer cached = wordCounts.get(word);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<String> symbols = new ArrayList<>(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            symbols.add(String.valueOf(word.charAt(i)));
+        }
+        while (symbols.size() > 1) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = 0; i + 1 < symbols.size(); i++) {
+                Integer rank = ranks.get(symbols.get(i) + ' ' + symbols.get(i + 1));
+                if (rank != null && rank < bestRank) {
+                    best = i;
+                    bestRank = rank;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            symbols.set(best, symbols.get(best) + symbols.remove(best + 1));
+        }
+
+        if (wordCounts.size() >= MAX_CACHED_WORDS) {
+            wordCounts.clear();
+        }
+        wordCounts.put(word, symbols.size());
+        return symbols.size();
+    }
+
+    private static String toByteAlphabet(String word) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        char[] mapped = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            mapped[i] = BYTE_ALPHABET[bytes[i] & 0xFF];
+        }
+        return new String(mapped);
+    }
+
+    /**
+     * GPT-2's bytes_to_unicode: printable bytes map to themselves, the rest to U+0100 onwards.
+     */
+    private static char[] byteAlphabet() {
+        char[] alphabet = new char[256];
+        int extra = 0;
+        for (int b = 0; b < 256; b++) {
+            boolean printable = (b >= '!' && b <= '~') || (b >= 0xA1 && b <= 0xAC) || (b >= 0xAE && b <= 0xFF);
+            alphabet[b] = printable ? (char) b : (char) (256 + extra++);
+        }
+        return alphabet;
+    }
+
+    @Override
+    public String describe() {
+        return "byte-level bpe, " + vocab.size() + " tokens, " + ranks.size() + " merges";
+    }
+}
@@ -0,0 +1,62 @@
+package com.lunarlaurus.mcp.service.tokenizer;
+
+/**
+ * Vocabulary-free estimate used when no model tokenizer is configured.
+ *
+ * Weighs characters by class instead of a flat chars/4: ASCII word runs cost
+ * about a token per four characters, punctuation and symbols (dense in code)
+ * a token each, CJK/kana/hangul one and a half, other alphabets half a token
+ * per letter.
+ */
+public final class HeuristicTokenizer implements Tokenizer {
+
+    @Override
+    public int countTokens(String text) {
+        double tokens = 0;
+        int wordRun = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (cp < 0x80 && Character.isLetterOrDigit(cp)) {
+                wordRun++;
+                continue;
+            }
+            tokens += wordTokens(wordRun);
+            wordRun = 0;
+
+            if (cp == ' ') {
+                continue; // Usually folded into the next word's token
+            } else if (cp == '\n') {
+                tokens += 1;
+            } else if (Character.isWhitespace(cp)) {
+                tokens += 0.25;
+            } else if (isCjk(cp)) {
+                tokens += 1.5;
+            } else if (Character.isLetter(cp)) {
+                tokens += 0.5;
+            } else {
+                tokens += 1;
+            }
+        }
+        tokens += wordTokens(wordRun);
+        return (int) Math.ceil(tokens);
+    }
+
+    private static double wordTokens(int run) {
+        return run == 0 ? 0 : Math.max(1.0, run / 4.0);
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+
+    @Override
+    public String describe() {
+        return "heuristic";
+    }
+}
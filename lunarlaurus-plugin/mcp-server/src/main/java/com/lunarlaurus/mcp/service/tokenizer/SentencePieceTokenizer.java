@@ -0,0 +1,108 @@
+package com.lunarlaurus.mcp.service.tokenizer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * SentencePiece (BPE-mode) tokenizer as used by LLaMA and Mistral models.
+ *
+ * Follows llama.cpp's SPM tokenizer: spaces become "▁" (with a leading one
+ * added), the text is split into code points, and the adjacent pair whose
+ * concatenation has the highest vocabulary score is merged until no pair is
+ * in the vocabulary. Pieces left outside the vocabulary fall back to one
+ * byte token per UTF-8 byte.
+ *
+ * Pieces scored Float.NEGATIVE_INFINITY count as vocabulary entries but are
+ * never produced by a merge (control and byte tokens, single characters).
+ */
+public final class SentencePieceTokenizer implements Tokenizer {
+
+    private static final char SPACE = '\u2581'; // ▁
+
+    private final Map<String, Float> scores;
+    private final boolean addSpacePrefix;
+
+    public SentencePieceTokenizer(Map<String, Float> scores, boolean addSpacePrefix) {
+        this.scores = scores;
+        this.addSpacePrefix = addSpacePrefix;
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text.isEmpty()) {
+            return 0;
+        }
+        String normalized = (addSpacePrefix ? String.valueOf(SPACE) : "") + text.replace(' ', SPACE);
+
+        int symbols = normalized.codePointCount(0, normalized.length());
+        int[] start = new int[symbols];
+        int[] length = new int[symbols];
+        int[] prev = new int[symbols];
+        int[] next = new int[symbols];
+        for (int i = 0, offset = 0; i < symbols; i++) {
+            int chars = Character.charCount(normalized.codePointAt(offset));
+            start[i] = offset;
+            length[i] = chars;
+            prev[i] = i - 1;
+            next[i] = i + 1 < symbols ? i + 1 : -1;
+            offset += chars;
+        }
+
+        PriorityQueue<Bigram> queue = new PriorityQueue<>();
+        for (int i = 0; i + 1 < symbols; i++) {
+            offer(queue, normalized, start, length, i, i + 1);
+        }
+
+        while (!queue.isEmpty()) {
+            Bigram bigram = queue.poll();
+            int left = bigram.left();
+            int right = bigram.right();
+            // Skip pairs invalidated by an earlier merge
+            if (length[left] == 0 || length[right] == 0 || next[left] != right
+                    || length[left] + length[right] != bigram.size()) {
+                continue;
+            }
+            length[left] += length[right];
+            length[right] = 0;
+            next[left] = next[right];
+            if (next[right] >= 0) {
+                prev[next[right]] = left;
+            }
+            if (prev[left] >= 0) {
+                offer(queue, normalized, start, length, prev[left], left);
+            }
+            if (next[left] >= 0) {
+                offer(queue, normalized, start, length, left, next[left]);
+            }
+        }
+
+        int tokens = 0;
+        for (int i = 0; i >= 0; i = next[i]) {
+            String piece = normalized.substring(start[i], start[i] + length[i]);
+            tokens += scores.containsKey(piece) ? 1 : piece.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return tokens;
+    }
+
+    private void offer(PriorityQueue<Bigram> queue, String text, int[] start, int[] length, int left, int right) {
+        int size = length[left] + length[right];
+        Float score = scores.get(text.substring(start[left], start[left] + size));
+        if (score != null && score != Float.NEGATIVE_INFINITY) {
+            queue.add(new Bigram(left, right, score, size));
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "sentencepiece, " + scores.size() + " pieces";
+    }
+
+    private record Bigram(int left, int right, float score, int size) implements Comparable<Bigram> {
+        @Override
+        public int compareTo(Bigram other) {
+            int byScore = Float.compare(other.score, score);
+            return byScore != 0 ? byScore : Integer.compare(left, other.left);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.lunarlaurus.mcp.service.tokenizer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token Counter
+ *
+ * Model-accurate token counts for routing, context-window checks and output
+ * budget sizing. Each backend's tokenizer is loaded from its model files
+ * (tokenizer.gpu.vocab / tokenizer.cpu.vocab: a GGUF file or tokenizer.json);
+ * without one, a character-class heuristic is used instead of chars/4.
+ *
+ * Counts for texts longer than tokenizer.cache.min-chars are kept in a bounded
+ * LRU keyed by SHA-256 of the text, since the same prompt is usually counted
+ * more than once on its way to a backend (routing, then budgeting).
+ */
+@Slf4j
+@Component
+public class TokenCounter {
+
+    // Output never shrinks below this, even when the prompt fills the window
+    private static final int MIN_OUTPUT_TOKENS = 16;
+
+    @Value("${tokenizer.gpu.vocab:}")
+    private String gpuVocab;
+
+    @Value("${tokenizer.cpu.vocab:}")
+    private String cpuVocab;
+
+    @Value("${tokenizer.cache.max-entries:10000}")
+    private int maxCacheEntries;
+
+    @Value("${tokenizer.cache.min-chars:256}")
+    private int minCachedChars;
+
+    @Value("${llm.gpu.context-window:4096}")
+    private int gpuContextWindow;
+
+    @Value("${llm.cpu.context-window:8192}")
+    private int cpuContextWindow;
+
+    private final ObjectMapper objectMapper;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    private final Map<String, LoadedTokenizer> tokenizers = new HashMap<>();
+    private Map<String, Integer> counts;
+
+    public TokenCounter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.cacheHits = Counter.builder("tokenizer.cache.requests").tag("result", "hit")
+            .description("Token count cache lookups").register(meterRegistry);
+        this.cacheMisses = Counter.builder("tokenizer.cache.requests").tag("result", "miss")
+            .description("Token count cache lookups").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        counts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > maxCacheEntries;
+            }
+        };
+
+        LoadedTokenizer gpu = load(gpuVocab);
+        LoadedTokenizer cpu = gpuVocab.equals(cpuVocab) ? gpu : load(cpuVocab);
+        tokenizers.put("gpu", gpu);
+        tokenizers.put("cpu", cpu);
+        log.info("Tokenizers: gpu={} (context {}), cpu={} (context {})",
+            gpu.tokenizer().describe(), gpuContextWindow, cpu.tokenizer().describe(), cpuContextWindow);
+    }
+
+    private LoadedTokenizer load(String vocab) {
+        if (vocab == null || vocab.isBlank()) {
+            return new LoadedTokenizer("heuristic", new HeuristicTokenizer());
+        }
+        try {
+            long start = System.nanoTime();
+            Tokenizer tokenizer = TokenizerLoader.load(Path.of(vocab), objectMapper);
+            log.info("Loaded tokenizer from {} in {}ms", vocab, (System.nanoTime() - start) / 1_000_000);
+            return new LoadedTokenizer(vocab, tokenizer);
+        } catch (Exception e) {
+            log.warn("Cannot load tokenizer from {}, using heuristic estimate: {}", vocab, e.getMessage());
+            return new LoadedTokenizer("heuristic", new HeuristicTokenizer());
+        }
+    }
+
+    /**
+     * Token count for routing decisions made before a backend is chosen.
+     */
+    public int count(String text) {
+        return count(text, "gpu");
+    }
+
+    /**
+     * Token count of text under the given backend's tokenizer.
+     */
+    public int count(String text, String backend) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        LoadedTokenizer loaded = tokenizerFor(backend);
+        if (text.length() < minCachedChars) {
+            return loaded.tokenizer().countTokens(text);
+        }
+
+        String key = loaded.source() + ':' + hash(text);
+        synchronized (this) {
+            Integer cached = counts.get(key);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+        }
+        cacheMisses.increment();
+        int tokens = loaded.tokenizer().countTokens(text);
+        synchronized (this) {
+            counts.put(key, tokens);
+        }
+        return tokens;
+    }
+
+    public int contextWindow(String backend) {
+        return "gpu".equals(backend) ? gpuContextWindow : cpuContextWindow;
+    }
+
+    /**
+     * Whether a prompt of promptTokens plus maxTokens of output fits the backend's context window.
+     */
+    public boolean fits(int promptTokens, int maxTokens, String backend) {
+        return promptTokens + maxTokens <= contextWindow(backend);
+    }
+
+    /**
+     * The request with maxTokens clamped to what is left of the backend's
+     * context window after the prompt. Returns the request itself when it fits.
+     */
+    public GenerationRequest fitToContext(GenerationRequest request) {
+        int window = contextWindow(request.getBackend());
+        int promptTokens = count(request.getPrompt(), request.getBackend());
+        int available = window - promptTokens;
+        if (available < MIN_OUTPUT_TOKENS) {
+            log.warn("Prompt of {} tokens overflows the {} context window of {} tokens",
+                promptTokens, request.getBackend(), window);
+            available = MIN_OUTPUT_TOKENS;
+        }
+        if (request.getMaxTokens() != null && request.getMaxTokens() <= available) {
+            return request;
+        }
+        log.debug("Clamping max tokens from {} to {} ({} prompt tokens, {} context)",
+            request.getMaxTokens(), available, promptTokens, window);
+        return request.toBuilder().maxTokens(available).build();
+    }
+
+    private LoadedTokenizer tokenizerFor(String backend) {
+        LoadedTokenizer loaded = tokenizers.get(backend);
+        return loaded != null ? loaded : tokenizers.get("gpu");
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record LoadedTokenizer(String source, Tokenizer tokenizer) {
+    }
+}
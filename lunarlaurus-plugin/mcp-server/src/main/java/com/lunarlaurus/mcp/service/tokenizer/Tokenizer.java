@@ -0,0 +1,15 @@
+package com.lunarlaurus.mcp.service.tokenizer;
+
+/**
+ * Counts the tokens a model would see for a piece of text.
+ * Implementations are immutable and safe to share between threads.
+ */
+public interface Tokenizer {
+
+    int countTokens(String text);
+
+    /**
+     * Short human-readable description for logs (e.g. "sentencepiece, 32000 pieces").
+     */
+    String describe();
+}
@@ -0,0 +1,264 @@
+package com.lunarlaurus.mcp.service.tokenizer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tokenizer Loader
+ *
+ * Builds a Tokenizer from the vocabulary shipped with a model:
+ * - GGUF model files (llama.cpp, Ollama blobs): only the metadata header is
+ *   read, tensors are never touched. "llama" vocabularies become a
+ *   SentencePieceTokenizer, "gpt2" vocabularies a BpeTokenizer.
+ * - Hugging Face tokenizer.json with a BPE model: byte-level vocabularies
+ *   become a BpeTokenizer; SentencePiece-derived ones (byte_fallback, "▁"
+ *   pieces) a SentencePieceTokenizer scored by merge rank.
+ */
+public final class TokenizerLoader {
+
+    private static final int GGUF_MAGIC = 0x46554747; // "GGUF"
+
+    private static final int GGUF_UINT8 = 0;
+    private static final int GGUF_INT8 = 1;
+    private static final int GGUF_UINT16 = 2;
+    private static final int GGUF_INT16 = 3;
+    private static final int GGUF_UINT32 = 4;
+    private static final int GGUF_INT32 = 5;
+    private static final int GGUF_FLOAT32 = 6;
+    private static final int GGUF_BOOL = 7;
+    private static final int GGUF_STRING = 8;
+    private static final int GGUF_ARRAY = 9;
+    private static final int GGUF_UINT64 = 10;
+    private static final int GGUF_INT64 = 11;
+    private static final int GGUF_FLOAT64 = 12;
+
+    // llama.cpp token types that text never merges into
+    private static final int TOKEN_TYPE_CONTROL = 3;
+    private static final int TOKEN_TYPE_BYTE = 6;
+
+    private TokenizerLoader() {
+    }
+
+    public static Tokenizer load(Path path, ObjectMapper objectMapper) throws IOException {
+        if (path.getFileName().toString().endsWith(".json")) {
+            return loadTokenizerJson(path, objectMapper);
+        }
+        return loadGguf(path);
+    }
+
+    private static Tokenizer loadGguf(Path path) throws IOException {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            DataInputStream in = new DataInputStream(stream);
+            if (readInt(in) != GGUF_MAGIC) {
+                throw new IOException(path + " is not a GGUF file");
+            }
+            int version = readInt(in);
+            if (version < 2) {
+                throw new IOException("Unsupported GGUF version " + version + " in " + path);
+            }
+            readLong(in); // tensor count
+            long metadataCount = readLong(in);
+
+            String model = null;
+            String[] tokens = null;
+            float[] scores = null;
+            int[] tokenTypes = null;
+            String[] merges = null;
+            boolean addSpacePrefix = true;
+
+            for (long kv = 0; kv < metadataCount; kv++) {
+                String key = readString(in);
+                int type = readInt(in);
+                switch (key) {
+                    case "tokenizer.ggml.model" -> model = (String) readValue(in, type);
+                    case "tokenizer.ggml.tokens" -> tokens = readStringArray(in, type);
+                    case "tokenizer.ggml.merges" -> merges = readStringArray(in, type);
+                    case "tokenizer.ggml.scores" -> scores = readFloatArray(in, type);
+                    case "tokenizer.ggml.token_type" -> tokenTypes = readIntArray(in, type);
+                    case "tokenizer.ggml.add_space_prefix" -> addSpacePrefix = (Boolean) readValue(in, type);
+                    default -> skipValue(in, type);
+                }
+            }
+
+            if (tokens == null) {
+                throw new IOException("GGUF file " + path + " has no tokenizer vocabulary");
+            }
+            if ("llama".equals(model)) {
+                Map<String, Float> pieces = new HashMap<>(tokens.length * 2);
+                for (int i = 0; i < tokens.length; i++) {
+                    boolean special = tokenTypes != null
+                        && (tokenTypes[i] == TOKEN_TYPE_CONTROL || tokenTypes[i] == TOKEN_TYPE_BYTE);
+                    pieces.put(tokens[i], special || scores == null ? Float.NEGATIVE_INFINITY : scores[i]);
+                }
+                return new SentencePieceTokenizer(pieces, addSpacePrefix);
+            }
+            if ("gpt2".equals(model) && merges != null) {
+                return new BpeTokenizer(new HashSet<>(Arrays.asList(tokens)), mergeRanks(Arrays.asList(merges)));
+            }
+            throw new IOException("Unsupported GGUF tokenizer model '" + model + "' in " + path);
+        }
+    }
+
+    private static Tokenizer loadTokenizerJson(Path path, ObjectMapper objectMapper) throws IOException {
+        JsonNode root = objectMapper.readTree(path.toFile());
+        JsonNode model = root.path("model");
+        if (!"BPE".equals(model.path("type").asText())) {
+            throw new IOException("Unsupported tokenizer.json model '" + model.path("type").asText() + "' in " + path);
+        }
+
+        Set<String> vocab = new HashSet<>();
+        Iterator<String> names = model.path("vocab").fieldNames();
+        while (names.hasNext()) {
+            vocab.add(names.next());
+        }
+
+        List<String> merges = new ArrayList<>();
+        for (JsonNode merge : model.path("merges")) {
+            // Older files store "a b", newer ones ["a", "b"]
+            merges.add(merge.isArray() ? merge.get(0).asText() + ' ' + merge.get(1).asText() : merge.asText());
+        }
+        Map<String, Integer> ranks = mergeRanks(merges);
+
+        boolean sentencePiece = model.path("byte_fallback").asBoolean(false) || vocab.contains("\u2581");
+        if (!sentencePiece) {
+            return new BpeTokenizer(vocab, ranks);
+        }
+
+        // SentencePiece BPE merges in score order, so an earlier merge rank is a higher score
+        Map<String, Float> pieces = new HashMap<>(vocab.size() * 2);
+        for (String piece : vocab) {
+            pieces.put(piece, Float.NEGATIVE_INFINITY);
+        }
+        for (Map.Entry<String, Integer> merge : ranks.entrySet()) {
+            String merged = merge.getKey().replace(" ", "");
+            if (pieces.containsKey(merged)) {
+                pieces.merge(merged, (float) -merge.getValue(), Float::max);
+            }
+        }
+        return new SentencePieceTokenizer(pieces, true);
+    }
+
+    private static Map<String, Integer> mergeRanks(List<String> merges) {
+        Map<String, Integer> ranks = new HashMap<>(merges.size() * 2);
+        for (int i = 0; i < merges.size(); i++) {
+            ranks.putIfAbsent(merges.get(i), i);
+        }
+        return ranks;
+    }
+
+    // GGUF is little-endian throughout
+
+    private static int readInt(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static long readLong(DataInputStream in) throws IOException {
+        return Long.reverseBytes(in.readLong());
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long length = readLong(in);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("GGUF string too long: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Object readValue(DataInputStream in, int type) throws IOException {
+        return switch (type) {
+            case GGUF_UINT8, GGUF_INT8 -> (int) in.readByte();
+            case GGUF_UINT16, GGUF_INT16 -> (int) Short.reverseBytes(in.readShort());
+            case GGUF_UINT32, GGUF_INT32 -> readInt(in);
+            case GGUF_FLOAT32 -> Float.intBitsToFloat(readInt(in));
+            case GGUF_BOOL -> in.readByte() != 0;
+            case GGUF_STRING -> readString(in);
+            case GGUF_UINT64, GGUF_INT64 -> readLong(in);
+            case GGUF_FLOAT64 -> Double.longBitsToDouble(readLong(in));
+            default -> throw new IOException("Unexpected GGUF value type " + type);
+        };
+    }
+
+    private static void skipValue(DataInputStream in, int type) throws IOException {
+        if (type != GGUF_ARRAY) {
+            readValue(in, type);
+            return;
+        }
+        int elementType = readInt(in);
+        long length = readLong(in);
+        int width = fixedWidth(elementType);
+        if (width > 0) {
+            in.skipNBytes(length * width);
+        } else {
+            for (long i = 0; i < length; i++) {
+                skipValue(in, elementType);
+            }
+        }
+    }
+
+    private static int fixedWidth(int type) {
+        return switch (type) {
+            case GGUF_UINT8, GGUF_INT8, GGUF_BOOL -> 1;
+            case GGUF_UINT16, GGUF_INT16 -> 2;
+            case GGUF_UINT32, GGUF_INT32, GGUF_FLOAT32 -> 4;
+            case GGUF_UINT64, GGUF_INT64, GGUF_FLOAT64 -> 8;
+            default -> 0;
+        };
+    }
+
+    private static int arrayLength(DataInputStream in, int type, int expectedElementType) throws IOException {
+        if (type != GGUF_ARRAY) {
+            throw new IOException("Expected GGUF array, got type " + type);
+        }
+        int elementType = readInt(in);
+        if (elementType != expectedElementType) {
+            throw new IOException("Expected GGUF array of type " + expectedElementType + ", got " + elementType);
+        }
+        long length = readLong(in);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("GGUF array too long: " + length);
+        }
+        return (int) length;
+    }
+
+    private static String[] readStringArray(DataInputStream in, int type) throws IOException {
+        String[] values = new String[arrayLength(in, type, GGUF_STRING)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    private static float[] readFloatArray(DataInputStream in, int type) throws IOException {
+        float[] values = new float[arrayLength(in, type, GGUF_FLOAT32)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Float.intBitsToFloat(readInt(in));
+        }
+        return values;
+    }
+
+    private static int[] readIntArray(DataInputStream in, int type) throws IOException {
+        int[] values = new int[arrayLength(in, type, GGUF_INT32)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readInt(in);
+        }
+        return values;
+    }
+}
@@ -1,17 +1,33 @@
 package com.lunarlaurus.mcp.tools;
 
+import com.lunarlaurus.mcp.model.GenerationRequest;
+import com.lunarlaurus.mcp.model.IndexedDocument;
+import com.lunarlaurus.mcp.model.SearchHit;
+import com.lunarlaurus.mcp.model.SourceFile;
+import com.lunarlaurus.mcp.service.execution.ToolCallCoalescer;
+import com.lunarlaurus.mcp.service.execution.ToolCallMetrics;
+import com.lunarlaurus.mcp.service.index.VectorIndexService;
 import com.lunarlaurus.mcp.service.inference.CodeAnalysisService;
-import com.lunarlaurus.mcp.service.inference.EmbeddingService;
+import com.lunarlaurus.mcp.service.inference.EmbeddingBatcher;
+import com.lunarlaurus.mcp.service.inference.EmbeddingEncoding;
 import com.lunarlaurus.mcp.service.inference.LocalLLMService;
 import com.lunarlaurus.mcp.service.inference.SummarizerService;
 import com.lunarlaurus.mcp.service.inference.TranslationService;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * MCP Tool Provider
@@ -21,60 +37,99 @@ import java.util.Arrays;
  *
  * Tools are auto-discovered by Spring AI's annotation scanner and registered
  * with the MCP stdio server for Claude Code to invoke.
+ *
+ * Generation tools stream partial output back to the client as MCP
+ * notifications while the backend is still producing tokens; summarize_text
+ * reports each finished chunk the same way. Generation calls are coalesced
+ * with identical in-flight calls: the caller that executes streams its
+ * progress, the others just wait for its final result. Every call is timed
+ * per tool by ToolCallMetrics.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class McpToolProvider {
 
+    private static final String TRANSPORT = "mcp";
+
     private final LocalLLMService localLLMService;
     private final SummarizerService summarizerService;
-    private final EmbeddingService embeddingService;
+    private final EmbeddingBatcher embeddingBatcher;
     private final CodeAnalysisService codeAnalysisService;
     private final TranslationService translationService;
-
-    private static final int GPU_MAX_TOKENS = 2000;
+    private final VectorIndexService vectorIndexService;
+    private final ToolCallCoalescer toolCallCoalescer;
+    private final ToolCallMetrics toolCallMetrics;
 
     @Tool(name = "local_llm", description = "Generate text using a local LLaMA/Mistral model running on rack servers. "
-            + "Supports Q&A, content generation, and analysis. Auto-routes between GPU (RTX4000, fast, <2k tokens) "
-            + "and CPU (Intel 8260, slower, handles longer context) backends.")
+            + "Supports Q&A, content generation, and analysis. Auto-routes between GPU (RTX4000, fast) "
+            + "and CPU (Intel 8260, slower, handles longer context) backends by current load and prompt size.")
     public String localLlm(
             @ToolParam(description = "The prompt for text generation") String prompt,
             @ToolParam(description = "Maximum tokens to generate (default 512)", required = false) Integer maxTokens,
             @ToolParam(description = "Sampling temperature 0-1 (default 0.2)", required = false) Double temperature,
-            @ToolParam(description = "Backend: 'auto' (smart routing), 'gpu' (RTX4000), or 'cpu' (Intel 8260). Default: auto", required = false) String backend) {
+            @ToolParam(description = "Backend: 'auto' (smart routing), 'gpu' (RTX4000), or 'cpu' (Intel 8260). Default: auto", required = false) String backend,
+            @ToolParam(description = "Force a fresh generation instead of a cached response (default false)", required = false) Boolean bypassCache,
+            @ToolParam(description = "Conversation id: pass the same id on every turn (resending the whole conversation) so the backend reuses its cached prefix", required = false) String sessionId,
+            ToolContext toolContext) {
 
         int tokens = maxTokens != null ? maxTokens : 512;
         double temp = temperature != null ? temperature : 0.2;
         String model = backend != null ? backend : "auto";
 
-        String resolvedBackend = determineBackend(prompt, model);
-        log.info("local_llm: prompt length={}, maxTokens={}, backend={}", prompt.length(), tokens, resolvedBackend);
-
-        return localLLMService.generate(prompt, tokens, temp, resolvedBackend);
+        log.info("local_llm: prompt length={}, maxTokens={}, backend={}", prompt.length(), tokens, model);
+
+        GenerationRequest request = GenerationRequest.builder()
+            .prompt(prompt)
+            .maxTokens(tokens)
+            .temperature(temp)
+            .backend(model)
+            .tool("local_llm")
+            .bypassCache(Boolean.TRUE.equals(bypassCache))
+            .sessionId(sessionId)
+            .build();
+
+        Optional<Consumer<String>> progress = progressNotifier(toolContext, "local_llm");
+        return toolCallMetrics.record("local_llm", TRANSPORT, () ->
+            toolCallCoalescer.execute("local_llm", Arrays.asList(prompt, tokens, temp, model, bypassCache, sessionId),
+                temp, () -> progress.isPresent()
+                    ? localLLMService.generateStream(request, progress.get())
+                    : localLLMService.generate(request)));
     }
 
     @Tool(name = "summarize_text", description = "Summarize large text or file contents using a local LLM. "
-            + "Good for condensing documents, articles, code comments, or any lengthy content.")
+            + "Good for condensing documents, articles, code comments, or any lengthy content. "
+            + "Text longer than the model context is summarized in parallel chunks, then combined.")
     public String summarizeText(
             @ToolParam(description = "The text to summarize") String text,
-            @ToolParam(description = "Maximum summary length in words (default 200)", required = false) Integer maxLength) {
+            @ToolParam(description = "Maximum summary length in words (default 200)", required = false) Integer maxLength,
+            ToolContext toolContext) {
 
         int length = maxLength != null ? maxLength : 200;
         log.info("summarize_text: input length={}, maxLength={}", text.length(), length);
 
-        return summarizerService.summarize(text, length);
+        Optional<Consumer<String>> progress = progressNotifier(toolContext, "summarize_text");
+        return toolCallMetrics.record("summarize_text", TRANSPORT, () ->
+            toolCallCoalescer.execute("summarize_text", Arrays.asList(text, length), null,
+                () -> progress.isPresent()
+                    ? summarizerService.summarize(text, length, progress.get())
+                    : summarizerService.summarize(text, length)));
     }
 
     @Tool(name = "generate_embedding", description = "Generate a semantic embedding vector for text using a local embedding model (nomic-embed-text). "
-            + "Useful for semantic search, similarity comparison, and clustering.")
+            + "Useful for semantic search, similarity comparison, and clustering. "
+            + "Use format 'base64' (lossless float32) or 'int8' (quantized, ~4x smaller) to keep large vectors compact.")
     public String generateEmbedding(
-            @ToolParam(description = "The text to generate an embedding for") String text) {
+            @ToolParam(description = "The text to generate an embedding for") String text,
+            @ToolParam(description = "Output format: 'text' (decimal list), 'base64' (little-endian float32) or 'int8' (quantized). Default: text", required = false) String format) {
 
-        log.info("generate_embedding: text length={}", text.length());
+        EmbeddingEncoding encoding = EmbeddingEncoding.parse(format);
+        log.info("generate_embedding: text length={}, format={}", text.length(), encoding);
 
-        float[] embedding = embeddingService.generateEmbedding(text);
-        return "Generated embedding with " + embedding.length + " dimensions: " + Arrays.toString(embedding);
+        return toolCallMetrics.record("generate_embedding", TRANSPORT, () -> {
+            float[] embedding = embeddingBatcher.embed(text);
+            return "Generated embedding with " + embedding.length + " dimensions: " + encoding.encode(embedding);
+        });
     }
 
     @Tool(name = "analyze_code", description = "Perform a first-pass code review using a local LLM. "
@@ -86,7 +141,26 @@ public class McpToolProvider {
         String lang = language != null ? language : "auto";
         log.info("analyze_code: code length={}, language={}", code.length(), lang);
 
-        return codeAnalysisService.analyze(code, lang);
+        return toolCallMetrics.record("analyze_code", TRANSPORT, () ->
+            toolCallCoalescer.execute("analyze_code", Arrays.asList(code, lang), null,
+                () -> codeAnalysisService.analyze(code, lang)));
+    }
+
+    @Tool(name = "analyze_code_batch", description = "Review a changeset of several files with a local LLM in one call. "
+            + "Pass file contents, or paths readable by the MCP server. Large files are split at class/method boundaries "
+            + "and analyzed concurrently; units unchanged since an earlier run are served from cache, so re-reviewing "
+            + "after a small edit is fast. Findings are grouped per file.")
+    public String analyzeCodeBatch(
+            @ToolParam(description = "Files to analyze: each with a path and optionally its content") List<SourceFile> files,
+            @ToolParam(description = "Programming language. Default: auto-detect per file extension", required = false) String language,
+            ToolContext toolContext) {
+
+        String lang = language != null ? language : "auto";
+        log.info("analyze_code_batch: {} files, language={}", files.size(), lang);
+
+        Optional<Consumer<String>> progress = progressNotifier(toolContext, "analyze_code_batch");
+        return toolCallMetrics.record("analyze_code_batch", TRANSPORT,
+            () -> codeAnalysisService.analyzeBatch(files, lang, progress.orElse(null)));
     }
 
     @Tool(name = "translate_text", description = "Translate text between languages using a local multilingual LLM. "
@@ -99,14 +173,53 @@ public class McpToolProvider {
         String sourceLang = sourceLanguage != null ? sourceLanguage : "auto";
         log.info("translate_text: text length={}, from={}, to={}", text.length(), sourceLang, targetLanguage);
 
-        return translationService.translate(text, sourceLang, targetLanguage);
+        return toolCallMetrics.record("translate_text", TRANSPORT, () ->
+            toolCallCoalescer.execute("translate_text", Arrays.asList(text, sourceLang, targetLanguage), null,
+                () -> translationService.translate(text, sourceLang, targetLanguage)));
+    }
+
+    @Tool(name = "upsert_document", description = "Embed a document with the local embedding model (nomic-embed-text) "
+            + "and store it in the in-process vector index on the MCP server. Re-upserting an id replaces the old version. "
+            + "Use with semantic_search to search large codebases or doc sets without passing vectors around.")
+    public String upsertDocument(
+            @ToolParam(description = "Unique document id (e.g. file path or file path + chunk number)") String id,
+            @ToolParam(description = "The document text to embed and index") String text,
+            @ToolParam(description = "Optional string metadata returned with search hits", required = false) Map<String, String> metadata) {
+
+        log.info("upsert_document: id={}, text length={}", id, text.length());
+
+        return toolCallMetrics.record("upsert_document", TRANSPORT, () -> {
+            IndexedDocument document = vectorIndexService.upsert(id, text, metadata);
+            return "Indexed document " + document.getId() + " (" + vectorIndexService.documentCount() + " documents in index)";
+        });
+    }
+
+    @Tool(name = "semantic_search", description = "Find documents in the local vector index most similar in meaning to a query. "
+            + "HNSW index held in memory-mapped storage on the MCP server: millisecond top-k queries over millions of chunks. "
+            + "Returns ids, similarity scores, snippets and metadata.")
+    public List<SearchHit> semanticSearch(
+            @ToolParam(description = "Natural language search query") String query,
+            @ToolParam(description = "Number of results to return (default 5)", required = false) Integer topK) {
+
+        int k = topK != null ? topK : 5;
+        log.info("semantic_search: query length={}, topK={}", query.length(), k);
+
+        return toolCallMetrics.record("semantic_search", TRANSPORT, () -> vectorIndexService.search(query, k));
     }
 
-    private String determineBackend(String prompt, String requestedModel) {
-        if (!"auto".equals(requestedModel)) {
-            return requestedModel;
+    /**
+     * Forwards partial output to the calling MCP client. MCP SDK 0.10 has no
+     * progress API on the server exchange, so chunks travel as log notifications.
+     */
+    private Optional<Consumer<String>> progressNotifier(ToolContext toolContext, String toolName) {
+        if (toolContext == null) {
+            return Optional.empty();
         }
-        int estimatedTokens = prompt.length() / 4;
-        return estimatedTokens < GPU_MAX_TOKENS ? "gpu" : "cpu";
+        Optional<McpSyncServerExchange> exchange = McpToolUtils.getMcpExchange(toolContext);
+        return exchange.map(ex -> chunk -> ex.loggingNotification(McpSchema.LoggingMessageNotification.builder()
+            .level(McpSchema.LoggingLevel.INFO)
+            .logger(toolName)
+            .data(chunk)
+            .build()));
     }
 }
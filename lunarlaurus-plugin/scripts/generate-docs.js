@@ -223,7 +223,7 @@ const doc = new Document({
             }),
             new Paragraph({
                 numbering: { reference: "bullets", level: 0 },
-                children: [new TextRun("Language: Java 17")]
+                children: [new TextRun("Language: Java 21")]
             }),
             new Paragraph({
                 numbering: { reference: "bullets", level: 0 },
@@ -0,0 +1,27 @@
+#!/bin/bash
+
+# LunarLaurus MCP Server - stdio launcher
+# Starts the server as an MCP child process (JSON-RPC on stdin/stdout).
+# Uses the fast-start build (mvn -Pstdio-fast package) when present:
+# AOT-processed context plus the AppCDS archive; else the plain jar.
+# Extra JVM options go in JAVA_OPTS, extra Spring arguments after the script.
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+TARGET="$SCRIPT_DIR/../mcp-server/target"
+JAR_NAME="mcp-server-1.0.0.jar"
+NATIVE="$TARGET/mcp-server"
+
+if [ -x "$NATIVE" ]; then
+    exec "$NATIVE" --spring.profiles.active=stdio "$@"
+fi
+
+if [ -f "$TARGET/stdio/application.jsa" ]; then
+    # The archive is only valid with the JVM and classpath it was recorded on;
+    # otherwise the JVM starts without it and warns. JVM warnings go to stderr,
+    # since by default they would land on stdout in the middle of JSON-RPC.
+    exec java -XX:SharedArchiveFile="$TARGET/stdio/application.jsa" -Xlog:disable -Xlog:all=warning:stderr \
+        -Dspring.aot.enabled=true $JAVA_OPTS \
+        -jar "$TARGET/stdio/$JAR_NAME" --spring.profiles.active=stdio "$@"
+fi
+
+exec java $JAVA_OPTS -jar "$TARGET/$JAR_NAME" --spring.profiles.active=stdio "$@"